@@ -0,0 +1,169 @@
+package com.ally.client;
+
+import com.ally.db.util.HashUtil;
+import com.ally.proto.AllyServiceGrpc;
+import com.ally.proto.BatchOperation;
+import com.ally.proto.PutRequest;
+import com.ally.proto.PutResponse;
+import com.ally.proto.WriteBatchRequest;
+import com.ally.proto.WriteBatchResponse;
+import com.google.protobuf.ByteString;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+
+/**
+ * Client of an AllyDB server. Calls are spread over a pool of channels, concurrent gets are sent together
+ * as multi-key calls and, if enabled, hot values are served from a near-cache kept coherent by the server.
+ */
+@Slf4j
+public final class AllyClient implements Closeable {
+
+    private static final String OK = "OK";
+
+    private final ChannelPool channelPool;
+    private final ScheduledExecutorService scheduler;
+    private final GetBatcher getBatcher;
+    private final NearCache nearCache;
+
+    public AllyClient(AllyClientOptions options) {
+
+        channelPool = new ChannelPool(options.getHost(), options.getPort(), options.getChannels());
+
+        //batches and reconnects are timed on one daemon thread, so the client does not keep the application alive
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        getBatcher = new GetBatcher(channelPool, scheduler, options.getMaxBatchSize(), options.getBatchDelayMicros());
+
+        nearCache = options.getNearCacheSize() > 0
+                ? new NearCache(options.getNearCacheSize(), options.getNearCacheExpireAfterWriteMillis(), channelPool, scheduler, options.getReconnectDelayMillis())
+                : null;
+    }
+
+    public byte[] get(byte[] key) {
+        return getAsync(key).join();
+    }
+
+    /**
+     * Value of the key, or an empty array if there is no such key.
+     */
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+
+        if (nearCache == null) {
+            return getBatcher.get(ByteString.copyFrom(key)).thenApply(getResponse -> getResponse.getValue().toByteArray());
+        }
+
+        //the near-cache uses the same hashed keys as the server, which pushes them on every change
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        byte[] cachedValue = nearCache.get(hashedKey);
+
+        if (cachedValue != null) {
+            return CompletableFuture.completedFuture(cachedValue);
+        }
+
+        NearCache.Entry placeholder = nearCache.reserve(hashedKey);
+
+        return getBatcher.get(ByteString.copyFrom(key)).thenApply(getResponse -> {
+            byte[] value = getResponse.getValue().toByteArray();
+            nearCache.fill(hashedKey, placeholder, value);
+            return value;
+        });
+    }
+
+    public void put(byte[] key, byte[] value) {
+        putAsync(key, value).join();
+    }
+
+    public CompletableFuture<Void> putAsync(byte[] key, byte[] value) {
+
+        PutRequest request = PutRequest.newBuilder()
+                .setKey(ByteString.copyFrom(key))
+                .setValue(ByteString.copyFrom(value))
+                .build();
+
+        CompletableFuture<Void> response = new CompletableFuture<>();
+
+        AllyServiceGrpc.newStub(channelPool.next()).put(request, new ResponseObserver<>(response, key, PutResponse::getResponseStatus));
+
+        return response;
+    }
+
+    public void delete(byte[] key) {
+        deleteAsync(key).join();
+    }
+
+    public CompletableFuture<Void> deleteAsync(byte[] key) {
+
+        WriteBatchRequest request = WriteBatchRequest.newBuilder()
+                .addOperations(BatchOperation.newBuilder().setKey(ByteString.copyFrom(key)).setDelete(true))
+                .build();
+
+        CompletableFuture<Void> response = new CompletableFuture<>();
+
+        AllyServiceGrpc.newStub(channelPool.next()).writeBatch(request, new ResponseObserver<>(response, key, WriteBatchResponse::getResponseStatus));
+
+        return response;
+    }
+
+    @Override
+    public void close() {
+
+        if (nearCache != null) {
+            nearCache.close();
+        }
+
+        scheduler.shutdownNow();
+        channelPool.shutdown();
+    }
+
+    /**
+     * Completes the future of a write, exceptionally if the server did not apply it. The near-cache drops the key right away,
+     * so the client reads its own writes without waiting for the invalidation from the server.
+     */
+    private final class ResponseObserver<T> implements StreamObserver<T> {
+
+        private final CompletableFuture<Void> response;
+        private final byte[] key;
+        private final Function<T, String> responseStatus;
+
+        private ResponseObserver(CompletableFuture<Void> response, byte[] key, Function<T, String> responseStatus) {
+            this.response = response;
+            this.key = key;
+            this.responseStatus = responseStatus;
+        }
+
+        @Override
+        public void onNext(T value) {
+
+            if (nearCache != null) {
+                nearCache.invalidate(HashUtil.getSHA256Hash(key));
+            }
+
+            String status = responseStatus.apply(value);
+
+            if (!OK.equals(status)) {
+                response.completeExceptionally(new IllegalStateException(status));
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            response.completeExceptionally(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            response.complete(null);
+        }
+    }
+}
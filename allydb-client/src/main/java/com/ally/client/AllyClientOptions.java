@@ -0,0 +1,42 @@
+package com.ally.client;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Knobs of the {@link AllyClient}.
+ */
+@Getter
+@Builder
+public final class AllyClientOptions {
+
+    @Builder.Default
+    private final String host = "localhost";
+
+    @Builder.Default
+    private final int port = 8080;
+
+    //calls are spread over the channels round-robin
+    @Builder.Default
+    private final int channels = 4;
+
+    //concurrent gets are sent together once there are this many of them, or after the delay
+    @Builder.Default
+    private final int maxBatchSize = 64;
+
+    //0 sends every get on its own
+    @Builder.Default
+    private final long batchDelayMicros = 200;
+
+    //number of values kept by the near-cache, 0 turns it off
+    @Builder.Default
+    private final long nearCacheSize = 0;
+
+    //values are dropped after this time even without an invalidation from the server
+    @Builder.Default
+    private final long nearCacheExpireAfterWriteMillis = 60000;
+
+    //delay before watching for invalidations again after the stream broke
+    @Builder.Default
+    private final long reconnectDelayMillis = 1000;
+}
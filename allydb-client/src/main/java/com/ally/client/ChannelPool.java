@@ -0,0 +1,45 @@
+package com.ally.client;
+
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of channels to one server, so concurrent calls are not all multiplexed over one connection.
+ */
+final class ChannelPool {
+
+    private final List<ManagedChannel> channels;
+    private final AtomicInteger nextChannel = new AtomicInteger();
+
+    ChannelPool(String host, int port, int numberOfChannels) {
+        this(newChannels(host, port, numberOfChannels));
+    }
+
+    ChannelPool(List<ManagedChannel> channels) {
+        this.channels = Collections.unmodifiableList(new ArrayList<>(channels));
+    }
+
+    ManagedChannel next() {
+        return channels.get(Math.floorMod(nextChannel.getAndIncrement(), channels.size()));
+    }
+
+    void shutdown() {
+        channels.forEach(ManagedChannel::shutdown);
+    }
+
+    private static List<ManagedChannel> newChannels(String host, int port, int numberOfChannels) {
+
+        List<ManagedChannel> managedChannels = new ArrayList<>(numberOfChannels);
+
+        for (int i = 0; i < Math.max(1, numberOfChannels); i++) {
+            managedChannels.add(ManagedChannelBuilder.forAddress(host, port).usePlaintext().build());
+        }
+
+        return managedChannels;
+    }
+}
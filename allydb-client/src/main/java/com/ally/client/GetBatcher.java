@@ -0,0 +1,126 @@
+package com.ally.client;
+
+import com.ally.proto.AllyServiceGrpc;
+import com.ally.proto.GetResponse;
+import com.ally.proto.MultiGetRequest;
+import com.ally.proto.MultiGetResponse;
+import com.google.protobuf.ByteString;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects concurrent gets and sends them as one multiGet call, when the batch is full or its delay is over.
+ * Gets of the same key in one batch share the response.
+ */
+final class GetBatcher {
+
+    private final ChannelPool channelPool;
+    private final ScheduledExecutorService scheduler;
+    private final int maxBatchSize;
+    private final long batchDelayMicros;
+
+    private final Object lock = new Object();
+    private Map<ByteString, CompletableFuture<GetResponse>> pendingGets = new LinkedHashMap<>();
+
+    GetBatcher(ChannelPool channelPool, ScheduledExecutorService scheduler, int maxBatchSize, long batchDelayMicros) {
+        this.channelPool = channelPool;
+        this.scheduler = scheduler;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.batchDelayMicros = batchDelayMicros;
+    }
+
+    CompletableFuture<GetResponse> get(ByteString key) {
+
+        CompletableFuture<GetResponse> response;
+        Map<ByteString, CompletableFuture<GetResponse>> fullBatch = null;
+
+        synchronized (lock) {
+
+            response = pendingGets.get(key);
+
+            if (response != null) {
+                return response;
+            }
+
+            response = new CompletableFuture<>();
+            pendingGets.put(key, response);
+
+            if (pendingGets.size() >= maxBatchSize || batchDelayMicros == 0) {
+                fullBatch = takePendingGets();
+            } else if (pendingGets.size() == 1) {
+                //a batch which got full earlier may have been sent already, then this sends the next one a bit early
+                scheduler.schedule(this::sendPendingGets, batchDelayMicros, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        if (fullBatch != null) {
+            send(fullBatch);
+        }
+
+        return response;
+    }
+
+    private void sendPendingGets() {
+
+        Map<ByteString, CompletableFuture<GetResponse>> batch;
+
+        synchronized (lock) {
+            batch = takePendingGets();
+        }
+
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private Map<ByteString, CompletableFuture<GetResponse>> takePendingGets() {
+        Map<ByteString, CompletableFuture<GetResponse>> batch = pendingGets;
+        pendingGets = new LinkedHashMap<>();
+        return batch;
+    }
+
+    private void send(Map<ByteString, CompletableFuture<GetResponse>> batch) {
+
+        List<CompletableFuture<GetResponse>> responses = new ArrayList<>(batch.values());
+
+        MultiGetRequest request = MultiGetRequest.newBuilder()
+                .addAllKeys(batch.keySet())
+                .build();
+
+        AllyServiceGrpc.newStub(channelPool.next()).multiGet(request, new StreamObserver<MultiGetResponse>() {
+
+            @Override
+            public void onNext(MultiGetResponse multiGetResponse) {
+
+                if (multiGetResponse.getResponsesCount() != responses.size()) {
+                    IllegalStateException mismatch = new IllegalStateException("Expected " + responses.size()
+                            + " responses, got " + multiGetResponse.getResponsesCount());
+                    responses.forEach(response -> response.completeExceptionally(mismatch));
+                    return;
+                }
+
+                for (int i = 0; i < responses.size(); i++) {
+                    responses.get(i).complete(multiGetResponse.getResponses(i));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                responses.forEach(response -> response.completeExceptionally(t));
+            }
+
+            @Override
+            public void onCompleted() {
+                //no-op if the responses came in onNext
+                responses.forEach(response -> response.completeExceptionally(new IllegalStateException("No response")));
+            }
+        });
+    }
+}
@@ -0,0 +1,167 @@
+package com.ally.client;
+
+import com.ally.proto.AllyServiceGrpc;
+import com.ally.proto.WatchEvent;
+import com.ally.proto.WatchRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of values in the client, keyed by hashed keys like the storage itself.
+ * The server pushes the hashed keys of committed changes through the watch stream and the cache drops them,
+ * so cached values are at most one flush of the server behind.
+ * <p>
+ * A get first puts a placeholder for the key, the value replaces the placeholder only if no invalidation
+ * removed it meanwhile, so a value read before a change is never cached after the invalidation of that change.
+ * Nothing is cached until the server has confirmed the position of the watch, changes made before it are not pushed.
+ */
+@Slf4j
+final class NearCache {
+
+    private final Cache<String, Entry> cache;
+    private final ChannelPool channelPool;
+    private final ScheduledExecutorService scheduler;
+    private final long reconnectDelayMillis;
+
+    //sequence number of the last change received, the watch resumes after it when the stream breaks,
+    //0 while no watch has confirmed its position
+    private volatile long lastSequenceNumber;
+    private volatile boolean closed;
+
+    NearCache(long maximumSize, long expireAfterWriteMillis, ChannelPool channelPool, ScheduledExecutorService scheduler, long reconnectDelayMillis) {
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteMillis, TimeUnit.MILLISECONDS)
+                .build();
+
+        this.channelPool = channelPool;
+        this.scheduler = scheduler;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+
+        watch();
+    }
+
+    /**
+     * Cached value, or null if the key is not cached.
+     */
+    byte[] get(String hashedKey) {
+        Entry entry = cache.getIfPresent(hashedKey);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Placeholder to pass to {@link #fill(String, Entry, byte[])} once the value is read.
+     */
+    Entry reserve(String hashedKey) {
+
+        Entry placeholder = new Entry(null);
+        Entry existingEntry = cache.asMap().putIfAbsent(hashedKey, placeholder);
+
+        if (existingEntry != null) {
+            return existingEntry;
+        }
+
+        //checked after the placeholder is in place: if the position is lost later, the placeholder is dropped with everything else,
+        //if there is none now, the value may be read before the watch starts and its changes would never be pushed
+        if (lastSequenceNumber == 0) {
+            cache.asMap().remove(hashedKey, placeholder);
+        }
+
+        return placeholder;
+    }
+
+    void fill(String hashedKey, Entry placeholder, byte[] value) {
+
+        if (placeholder.value != null) {
+            return;
+        }
+
+        //missing keys are not cached
+        if (value.length == 0) {
+            cache.asMap().remove(hashedKey, placeholder);
+        } else {
+            cache.asMap().replace(hashedKey, placeholder, new Entry(value));
+        }
+    }
+
+    void invalidate(String hashedKey) {
+        cache.invalidate(hashedKey);
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    private void watch() {
+
+        WatchRequest request = WatchRequest.newBuilder()
+                .setFromSequenceNumber(lastSequenceNumber == 0 ? 0 : lastSequenceNumber + 1)
+                .build();
+
+        AllyServiceGrpc.newStub(channelPool.next()).watch(request, new StreamObserver<WatchEvent>() {
+
+            @Override
+            public void onNext(WatchEvent watchEvent) {
+
+                switch (watchEvent.getType()) {
+                    case STARTED:
+                        //a resumed watch replays the changes after lastSequenceNumber next, so it stays where it is
+                        if (lastSequenceNumber == 0) {
+                            lastSequenceNumber = watchEvent.getSequenceNumber();
+                        }
+                        return;
+                    case RESET:
+                        cache.invalidateAll();
+                        break;
+                    default:
+                        cache.invalidate(watchEvent.getHashedKey());
+                }
+
+                lastSequenceNumber = watchEvent.getSequenceNumber();
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Watch for invalidations broke: {}", Status.fromThrowable(t));
+                rewatch(Status.fromThrowable(t).getCode() == Status.Code.OUT_OF_RANGE);
+            }
+
+            @Override
+            public void onCompleted() {
+                rewatch(false);
+            }
+        });
+    }
+
+    private void rewatch(boolean changesLost) {
+
+        //without a position to resume from, the changes until the next watch starts are lost
+        //and nothing cached can be trusted anymore
+        if (changesLost || lastSequenceNumber == 0) {
+            //reset first, so a placeholder put meanwhile is either removed here or refused by reserve
+            lastSequenceNumber = 0;
+            cache.invalidateAll();
+        }
+
+        if (!closed) {
+            scheduler.schedule(this::watch, reconnectDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static final class Entry {
+
+        //null while the value is being read
+        private final byte[] value;
+
+        private Entry(byte[] value) {
+            this.value = value;
+        }
+    }
+}
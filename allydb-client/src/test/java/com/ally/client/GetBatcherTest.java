@@ -0,0 +1,169 @@
+package com.ally.client;
+
+import com.ally.db.AllyShards;
+import com.ally.db.proto.impl.AllyServiceImpl;
+import com.ally.proto.GetResponse;
+import com.ally.proto.MultiGetRequest;
+import com.ally.proto.MultiGetResponse;
+import com.google.protobuf.ByteString;
+import io.grpc.BindableService;
+import io.grpc.stub.StreamObserver;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GetBatcherTest {
+
+    //long enough for all gets of a test to join one batch
+    private static final long BATCH_DELAY_MICROS = 50_000;
+    private static final long WAIT_MILLIS = 2000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger multiGets = new AtomicInteger();
+
+    private InProcessAllyServer server;
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    public void concurrentGetsAreSentTogether() throws Exception {
+
+        GetBatcher getBatcher = open(allyShards -> new AllyServiceImpl(allyShards) {
+            @Override
+            public void multiGet(MultiGetRequest request, StreamObserver<MultiGetResponse> responseObserver) {
+                multiGets.incrementAndGet();
+                super.multiGet(request, responseObserver);
+            }
+        });
+
+        server.allyShards().put(bytes("first"), bytes("1"));
+        server.allyShards().put(bytes("second"), bytes("2"));
+
+        CompletableFuture<GetResponse> first = getBatcher.get(key("first"));
+        CompletableFuture<GetResponse> second = getBatcher.get(key("second"));
+        CompletableFuture<GetResponse> missing = getBatcher.get(key("missing"));
+
+        //gets of the same key in one batch share the response
+        assertSame(first, getBatcher.get(key("first")));
+
+        assertEquals("1", first.join().getValue().toStringUtf8());
+        assertEquals("2", second.join().getValue().toStringUtf8());
+        assertTrue(missing.join().getValue().isEmpty());
+        assertEquals(1, multiGets.get());
+    }
+
+    @Test
+    public void responseCountMismatchFailsEveryGet() throws Exception {
+
+        GetBatcher getBatcher = open(allyShards -> new AllyServiceImpl(allyShards) {
+            @Override
+            public void multiGet(MultiGetRequest request, StreamObserver<MultiGetResponse> responseObserver) {
+                super.multiGet(request, new ForwardingObserver(responseObserver) {
+                    @Override
+                    public void onNext(MultiGetResponse multiGetResponse) {
+                        //the response of the last key is lost
+                        responseObserver.onNext(multiGetResponse.toBuilder()
+                                .removeResponses(multiGetResponse.getResponsesCount() - 1)
+                                .build());
+                    }
+                });
+            }
+        });
+
+        CompletableFuture<GetResponse> first = getBatcher.get(key("first"));
+        CompletableFuture<GetResponse> second = getBatcher.get(key("second"));
+
+        assertTrue(assertFailed(first) instanceof IllegalStateException);
+        assertTrue(assertFailed(second) instanceof IllegalStateException);
+    }
+
+    @Test
+    public void callCompletedWithoutResponseFailsEveryGet() throws Exception {
+
+        GetBatcher getBatcher = open(allyShards -> new AllyServiceImpl(allyShards) {
+            @Override
+            public void multiGet(MultiGetRequest request, StreamObserver<MultiGetResponse> responseObserver) {
+                responseObserver.onCompleted();
+            }
+        });
+
+        CompletableFuture<GetResponse> first = getBatcher.get(key("first"));
+        CompletableFuture<GetResponse> second = getBatcher.get(key("second"));
+
+        assertFailed(first);
+        assertFailed(second);
+    }
+
+    private GetBatcher open(Function<AllyShards, BindableService> serviceFactory) throws IOException {
+
+        server = new InProcessAllyServer(folder.getRoot(), 16, serviceFactory);
+
+        return new GetBatcher(server.newChannelPool(), scheduler, 64, BATCH_DELAY_MICROS);
+    }
+
+    private static Throwable assertFailed(CompletableFuture<GetResponse> response) throws InterruptedException {
+        try {
+            response.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            throw new AssertionError("Get must fail");
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (TimeoutException e) {
+            throw new AssertionError("Get must complete");
+        }
+    }
+
+    private static ByteString key(String key) {
+        return ByteString.copyFromUtf8(key);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static class ForwardingObserver implements StreamObserver<MultiGetResponse> {
+
+        private final StreamObserver<MultiGetResponse> delegate;
+
+        private ForwardingObserver(StreamObserver<MultiGetResponse> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onNext(MultiGetResponse multiGetResponse) {
+            delegate.onNext(multiGetResponse);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            delegate.onError(t);
+        }
+
+        @Override
+        public void onCompleted() {
+            delegate.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.ally.client;
+
+import com.ally.db.AllyShards;
+import com.ally.db.EngineMode;
+import com.ally.db.compression.DictionaryPolicy;
+import com.ally.db.feed.ChangeFeed;
+import com.ally.db.memory.MemoryPolicy;
+import com.ally.db.scheduler.FlushPolicy;
+import com.ally.db.storage.SegmentPlacement;
+import io.grpc.BindableService;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Server of the in-memory engine for client tests, reachable through in-process channels.
+ * It can be stopped and started again with the same values, which breaks the streams of the clients.
+ */
+final class InProcessAllyServer implements Closeable {
+
+    private final String name = InProcessServerBuilder.generateName();
+    private final List<ManagedChannel> channels = new ArrayList<>();
+
+    private final AllyShards allyShards;
+    private final BindableService service;
+
+    private Server server;
+
+    InProcessAllyServer(File directory, int watchHistorySize, Function<AllyShards, BindableService> serviceFactory) throws IOException {
+
+        allyShards = new AllyShards(EngineMode.MEMORY, Collections.singletonList(directory.getPath()), SegmentPlacement.ROUND_ROBIN,
+                FlushPolicy.builder().build(), DictionaryPolicy.builder().build(), MemoryPolicy.builder().maxBytes(1024 * 1024).slabSize(64 * 1024).build(),
+                new ChangeFeed(watchHistorySize, 1024), 1, 1, 100, 100, 100, 4096);
+
+        service = serviceFactory.apply(allyShards);
+
+        start();
+    }
+
+    AllyShards allyShards() {
+        return allyShards;
+    }
+
+    ChannelPool newChannelPool() {
+
+        ManagedChannel channel = InProcessChannelBuilder.forName(name).build();
+        channels.add(channel);
+
+        return new ChannelPool(Collections.singletonList(channel));
+    }
+
+    void start() throws IOException {
+        server = InProcessServerBuilder.forName(name).addService(service).build().start();
+    }
+
+    void stop() throws InterruptedException {
+        server.shutdownNow();
+        server.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void close() {
+        channels.forEach(ManagedChannel::shutdownNow);
+        server.shutdownNow();
+    }
+}
@@ -0,0 +1,189 @@
+package com.ally.client;
+
+import com.ally.db.AllyShards;
+import com.ally.db.proto.impl.AllyServiceImpl;
+import com.ally.db.util.HashUtil;
+import com.ally.proto.WatchEvent;
+import com.ally.proto.WatchRequest;
+import io.grpc.BindableService;
+import io.grpc.stub.StreamObserver;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NearCacheTest {
+
+    private static final long WAIT_MILLIS = 2000;
+    private static final long RECONNECT_DELAY_MILLIS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private InProcessAllyServer server;
+    private NearCache nearCache;
+
+    @After
+    public void tearDown() {
+        nearCache.close();
+        scheduler.shutdownNow();
+        server.close();
+    }
+
+    @Test
+    public void nothingIsCachedBeforeTheWatchStarts() throws Exception {
+
+        CountDownLatch watchAllowed = new CountDownLatch(1);
+
+        open(16, allyShards -> new AllyServiceImpl(allyShards) {
+            @Override
+            public void watch(WatchRequest request, StreamObserver<WatchEvent> responseObserver) {
+                try {
+                    watchAllowed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.watch(request, responseObserver);
+            }
+        });
+
+        //a change made now would never be pushed, so the value must not be kept
+        cache("key", "value");
+        assertNull(nearCache.get(hash("key")));
+
+        watchAllowed.countDown();
+
+        awaitStarted();
+        cache("key", "value");
+        assertNotNull(nearCache.get(hash("key")));
+    }
+
+    @Test
+    public void changeOfCachedKeyInvalidatesIt() throws Exception {
+
+        open(16, AllyServiceImpl::new);
+        awaitStarted();
+
+        cache("key", "value");
+        server.allyShards().put(bytes("key"), bytes("changed"));
+
+        assertTrue(awaitInvalidated("key"));
+    }
+
+    @Test
+    public void placeholderInvalidatedBeforeFillIsNotCached() throws Exception {
+
+        open(16, AllyServiceImpl::new);
+        awaitStarted();
+
+        //the value was read before a change whose invalidation came first
+        NearCache.Entry placeholder = nearCache.reserve(hash("key"));
+        nearCache.invalidate(hash("key"));
+        nearCache.fill(hash("key"), placeholder, bytes("value"));
+
+        assertNull(nearCache.get(hash("key")));
+    }
+
+    @Test
+    public void resumedWatchReplaysChangesMissedWhileDisconnected() throws Exception {
+
+        open(16, AllyServiceImpl::new);
+        awaitStarted();
+
+        cache("changed", "value");
+        cache("unchanged", "value");
+
+        server.stop();
+        server.allyShards().put(bytes("changed"), bytes("other value"));
+        server.start();
+
+        assertTrue(awaitInvalidated("changed"));
+        //the watch resumed where it broke, so nothing else had to be dropped
+        assertNotNull(nearCache.get(hash("unchanged")));
+    }
+
+    @Test
+    public void watchWhichCanNotResumeDropsEverything() throws Exception {
+
+        open(2, AllyServiceImpl::new);
+        awaitStarted();
+
+        cache("unchanged", "value");
+
+        //more changes than the server retains, so the watch can not resume and answers with OUT_OF_RANGE
+        server.stop();
+        for (int i = 0; i < 4; i++) {
+            server.allyShards().put(bytes("other" + i), bytes("value"));
+        }
+        server.start();
+
+        assertTrue(awaitInvalidated("unchanged"));
+
+        //the next watch starts from the current position
+        awaitStarted();
+    }
+
+    private void open(int watchHistorySize, Function<AllyShards, BindableService> serviceFactory) throws IOException {
+        server = new InProcessAllyServer(folder.getRoot(), watchHistorySize, serviceFactory);
+        nearCache = new NearCache(100, 60000, server.newChannelPool(), scheduler, RECONNECT_DELAY_MILLIS);
+    }
+
+    private void cache(String key, String value) {
+        NearCache.Entry placeholder = nearCache.reserve(hash(key));
+        nearCache.fill(hash(key), placeholder, bytes(value));
+    }
+
+    /**
+     * Waits until values are cached, which they are once the server confirmed the position of the watch.
+     */
+    private void awaitStarted() throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        do {
+            cache("probe", "value");
+            if (nearCache.get(hash("probe")) != null) {
+                nearCache.invalidate(hash("probe"));
+                return;
+            }
+            Thread.sleep(10);
+        } while (System.currentTimeMillis() < deadline);
+
+        throw new AssertionError("Watch did not start");
+    }
+
+    private boolean awaitInvalidated(String key) throws InterruptedException {
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+
+        while (nearCache.get(hash(key)) != null) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+
+        return true;
+    }
+
+    private static String hash(String key) {
+        return HashUtil.getSHA256Hash(bytes(key));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -10,6 +10,7 @@ import java.security.NoSuchAlgorithmException;
 public final class HashUtil {
 
     private static final String SHA_256 = "SHA-256";
+    private static final int PARTITION_PREFIX_LENGTH = 8;
 
     public static String getSHA256Hash(byte[] data) {
         MessageDigest digest;
@@ -25,6 +26,15 @@ public final class HashUtil {
         return null;
     }
 
+    /**
+     * Maps a hashed key to a partition using the first 32 bits of the hash,
+     * so routing does not need to hash the key again.
+     */
+    public static int getPartition(String hashedKey, int numberOfPartitions) {
+        int prefix = Integer.parseUnsignedInt(hashedKey.substring(0, PARTITION_PREFIX_LENGTH), 16);
+        return Integer.remainderUnsigned(prefix, numberOfPartitions);
+    }
+
     private static String bytesToHex(byte[] hash) {
         return DatatypeConverter.printHexBinary(hash);
     }
@@ -0,0 +1,17 @@
+package com.ally.db;
+
+/**
+ * Output of the {@link BulkLoader} for one partition, checked and moved into the data directories, but not visible yet.
+ */
+interface Adoption {
+
+    /**
+     * Replaces all values of the partition. Caller must hold the lock of the partition, see {@link Partition#getLock()}.
+     */
+    void commit();
+
+    /**
+     * Moves the files back, so the output stays complete and can be adopted later.
+     */
+    void abort();
+}
@@ -0,0 +1,1178 @@
+package com.ally.db;
+
+import com.ally.db.compression.CompressionDictionaries;
+import com.ally.db.compression.DictionaryPolicy;
+import com.ally.db.feed.ChangeEvent;
+import com.ally.db.feed.ChangeFeed;
+import com.ally.db.feed.ChangeType;
+import com.ally.db.index.IndexFileWrapper;
+import com.ally.db.index.ValuePointer;
+import com.ally.db.index.VersionedValue;
+import com.ally.db.scheduler.AdaptiveScheduler;
+import com.ally.db.scheduler.FlushPolicy;
+import com.ally.db.scheduler.LoadMonitor;
+import com.ally.db.scheduler.ScheduledWork;
+import com.ally.db.storage.SegmentPlacement;
+import com.ally.db.storage.StorageDirectories;
+import com.ally.db.storage.StorageFileWrapper;
+import com.ally.db.util.CompressionUtil;
+import com.ally.db.util.HashUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+
+
+@Slf4j
+public final class Ally extends Partition {
+
+    private static final String FILE_EXTENSION = ".abby";
+
+    private final Object lock = new Object();
+    private Map<String, ValuePointer> inMemoryIndex = new HashMap<>();
+    private final Set<String> dirtyFilesPaths = new HashSet<>();
+    private final Set<StorageFileWrapper> setOfStorageFileWrappers = new HashSet<>();
+    //deletes of readable keys, published with the next flush
+    private final List<ChangeEvent> pendingDeletes = new ArrayList<>();
+    private final LoadMonitor loadMonitor = new LoadMonitor();
+    //reads of the same key which are in flight, concurrent gets of a missing key share one disk read
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> inFlightReads = new ConcurrentHashMap<>();
+    private ExecutorService ioExecutor;
+    private AdaptiveScheduler scheduler;
+
+    private Map<String, VersionedValue> writeBuffer;
+    private Map<String, VersionedValue> editBuffer;
+    private Cache<String, byte[]> readCache;
+
+    private long lastSequenceNumber;
+
+    //signals for the scheduler, written under the lock
+    private volatile long bufferedBytes;
+    private volatile long oldestBufferedWriteMillis;
+    private volatile boolean indexDirty;
+    private long garbageLines;
+    //incremented whenever lines of existing storage files are moved, so reads outside the lock can detect it
+    private long fileRewriteCount;
+
+    private long storageFileRecommendedSize;
+
+    private StorageFileWrapper currentStorageFileWrapper;
+    private StorageDirectories storageDirectories;
+    private IndexFileWrapper index;
+    private CompressionDictionaries compressionDictionaries;
+    private ChangeFeed changeFeed;
+
+    private Ally() {
+
+    }
+
+    public Ally(List<String> dbDirectoryPaths, SegmentPlacement segmentPlacement, FlushPolicy flushPolicy, DictionaryPolicy dictionaryPolicy,
+                ChangeFeed changeFeed, ExecutorService ioExecutor, int readCacheSize, int writeBufferSize, int editBufferSize, long storageFileRecommendedSize) {
+
+        synchronized (lock) {
+
+            this.changeFeed = changeFeed;
+
+            this.ioExecutor = ioExecutor;
+
+            writeBuffer = new HashMap<>(writeBufferSize);
+
+            editBuffer = new HashMap<>(editBufferSize);
+
+            readCache = Caffeine.newBuilder()
+                    .maximumSize(readCacheSize)
+                    .initialCapacity(10)
+                    .build();
+
+            this.storageFileRecommendedSize = storageFileRecommendedSize;
+
+            //if dir does not exist, create it
+
+            //if dir exists, but there are no files, create an index file and 1 storage file
+
+            //if there are storage files, but no index file, remove all file and create index file and 1 storage file
+
+            //if there is an index file and at least 1 storage file, choose the smallest storage file as an current file to write
+
+            storageDirectories = new StorageDirectories(dbDirectoryPaths, segmentPlacement);
+
+            //the index always lives in the primary directory
+            index = new IndexFileWrapper(storageDirectories.primary().getPath());
+
+            compressionDictionaries = new CompressionDictionaries(dictionaryPolicy, storageDirectories.primary());
+
+            loadIndexAndStorage(storageDirectories, index);
+
+            //dictionaries of deleted storage files are left over from an earlier run
+            retireUnusedDictionaries();
+
+            //sequence numbers start from the wall clock in microseconds, so they keep growing across restarts
+            //even if the latest writes were deleted or lost from the buffers before they reached the index
+            lastSequenceNumber = Math.max(
+                    inMemoryIndex.values().stream().mapToLong(ValuePointer::getSequenceNumber).max().orElse(0),
+                    TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+
+            scheduler = new AdaptiveScheduler(flushPolicy, loadMonitor, new AllyScheduledWork());
+            scheduler.start();
+        }
+
+    }
+
+    /**
+     * @return false if the value is empty and was not stored
+     */
+    public boolean put(byte[] key, byte[] value) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        //hash the key
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return putHashed(hashedKey, value);
+
+    }
+
+    public byte[] get(byte[] key) {
+
+        if (key == null || key.length == 0) {
+            log.error("Key must be not null or empty");
+        }
+
+        //hash the key
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return getHashed(hashedKey);
+
+    }
+
+    /**
+     * Reads the value on the I/O executor. Concurrent gets of the same key which miss the read cache
+     * share one disk read and one decompression.
+     */
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+
+        if (key == null || key.length == 0) {
+            log.error("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return getHashedAsync(hashedKey);
+
+    }
+
+    public CompletableFuture<Boolean> putAsync(byte[] key, byte[] value) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return putHashedAsync(hashedKey, value);
+
+    }
+
+    public void delete(byte[] key) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        deleteHashed(hashedKey);
+
+    }
+
+    /**
+     * Version of the key, which is the sequence number of its latest write, or 0 if there is no such key.
+     */
+    public long getVersion(byte[] key) {
+
+        if (key == null || key.length == 0) {
+            log.error("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return getVersionHashed(hashedKey);
+
+    }
+
+    /**
+     * Puts the value only if the current version of the key equals the expected one.
+     * Expected version 0 means that the key must not exist, an empty value deletes the key.
+     */
+    public CompareAndSetResult compareAndSet(byte[] key, long expectedVersion, byte[] value) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return compareAndSetHashed(hashedKey, expectedVersion, value);
+
+    }
+
+    /**
+     * Applies all operations of the batch at once, readers see either none or all of them.
+     */
+    public void write(WriteBatch writeBatch) {
+
+        if (writeBatch.isRejected()) {
+            log.warn("The batch has an empty value and is not applied");
+            return;
+        }
+
+        List<WriteBatch.Operation> compressedOperations = compressOperations(writeBatch.getOperations());
+
+        synchronized (lock) {
+            applyOperations(compressedOperations);
+        }
+
+    }
+
+    /**
+     * Replaces all values of this partition with the storage files and the index written by the {@link BulkLoader}.
+     * The files are moved into the data directories first, then the new index replaces the old one in a single step,
+     * so readers see either all old or all new values. Writes buffered before the adoption are dropped.
+     */
+    public boolean adopt(String bulkDirectoryPath) {
+
+        Adoption adoption = prepareAdoption(bulkDirectoryPath);
+
+        if (adoption == null) {
+            return false;
+        }
+
+        synchronized (lock) {
+            adoption.commit();
+        }
+
+        return true;
+    }
+
+    @Override
+    Adoption prepareAdoption(String bulkDirectoryPath) {
+
+        IndexFileWrapper bulkIndex = new IndexFileWrapper(bulkDirectoryPath);
+
+        if (!bulkIndex.exists()) {
+            log.error("No index found in {}, the bulk load is not complete", bulkDirectoryPath);
+            return null;
+        }
+
+        Map<String, ValuePointer> loadedIndex = bulkIndex.loadIndex();
+
+        File[] bulkStorageFiles = new File(bulkDirectoryPath).listFiles((dir, name) -> name.startsWith("s") && name.endsWith(FILE_EXTENSION));
+
+        if (bulkStorageFiles == null) {
+            log.error("Failed to list storage files in {}", bulkDirectoryPath);
+            return null;
+        }
+
+        Set<String> bulkFilenames = Arrays.stream(bulkStorageFiles).map(File::getName).collect(Collectors.toSet());
+
+        //an index pointing to a missing file would lose values only after the old ones are gone
+        Optional<String> missingFilename = loadedIndex.values().stream()
+                .map(ValuePointer::getFilename)
+                .filter(filename -> !bulkFilenames.contains(filename))
+                .findAny();
+
+        if (missingFilename.isPresent()) {
+            log.error("Index in {} points to storage file {}, which does not exist", bulkDirectoryPath, missingFilename.get());
+            return null;
+        }
+
+        Map<String, File> directoriesByFilename = new HashMap<>();
+
+        synchronized (lock) {
+            Arrays.stream(bulkStorageFiles).forEach(file -> directoriesByFilename.put(file.getName(), storageDirectories.nextSegmentDirectory()));
+        }
+
+        //nothing points to the files before the index is replaced, so they can be moved without the lock
+        Map<File, File> movedFiles = new LinkedHashMap<>();
+        List<StorageFileWrapper> adoptedStorageFileWrappers = new ArrayList<>(bulkStorageFiles.length);
+
+        for (File bulkStorageFile : bulkStorageFiles) {
+            try {
+                File adoptedFile = new File(directoriesByFilename.get(bulkStorageFile.getName()), bulkStorageFile.getName());
+                Files.move(bulkStorageFile.toPath(), adoptedFile.toPath());
+                movedFiles.put(adoptedFile, bulkStorageFile);
+                adoptedStorageFileWrappers.add(new StorageFileWrapper(adoptedFile));
+            } catch (IOException e) {
+                log.error("Failed to move storage file {}", bulkStorageFile, e);
+                moveBack(movedFiles);
+                return null;
+            }
+        }
+
+        Map<String, ValuePointer> adoptedIndex = new HashMap<>(loadedIndex.size() * 4 / 3 + 1);
+        Map<String, Long> pointersByFilename = new HashMap<>();
+
+        loadedIndex.forEach((hash, valuePointer) -> {
+            adoptedIndex.put(hash, new ValuePointer(valuePointer.getFilename(), valuePointer.getLineNumber(),
+                    directoriesByFilename.get(valuePointer.getFilename()).getPath(), valuePointer.getSequenceNumber(), valuePointer.getDictionaryId()));
+            pointersByFilename.merge(valuePointer.getFilename(), 1L, Long::sum);
+        });
+
+        return new Adoption() {
+
+            @Override
+            public void commit() {
+                commitAdoption(adoptedIndex, adoptedStorageFileWrappers, pointersByFilename);
+
+                //a left over index only makes a later adoption of the same directory fail its check
+                if (!bulkIndex.tryDeleteIndex()) {
+                    log.warn("Failed to delete the index in {}", bulkDirectoryPath);
+                }
+
+                log.info("Adopted {} keys in {} storage files", adoptedIndex.size(), adoptedStorageFileWrappers.size());
+            }
+
+            @Override
+            public void abort() {
+                moveBack(movedFiles);
+            }
+        };
+    }
+
+    private void commitAdoption(Map<String, ValuePointer> adoptedIndex, List<StorageFileWrapper> adoptedStorageFileWrappers, Map<String, Long> pointersByFilename) {
+
+        synchronized (lock) {
+
+            //the new index on disk is the point of no return
+            index.writeIndexOnDisk(adoptedIndex);
+
+            Set<StorageFileWrapper> oldStorageFileWrappers = new HashSet<>(setOfStorageFileWrappers);
+            oldStorageFileWrappers.add(currentStorageFileWrapper);
+
+            fileRewriteCount++;
+
+            inMemoryIndex = adoptedIndex;
+            writeBuffer.clear();
+            editBuffer.clear();
+            pendingDeletes.clear();
+            readCache.invalidateAll();
+            inFlightReads.clear();
+
+            bufferedBytes = 0;
+            oldestBufferedWriteMillis = 0;
+            indexDirty = false;
+
+            lastSequenceNumber = Math.max(lastSequenceNumber,
+                    adoptedIndex.values().stream().mapToLong(ValuePointer::getSequenceNumber).max().orElse(0));
+
+            //lines of keys which repeated in the input are garbage
+            dirtyFilesPaths.clear();
+            garbageLines = 0;
+
+            adoptedStorageFileWrappers.forEach(storageFileWrapper -> {
+                long garbage = storageFileWrapper.getNumberOfLines() - 1 - pointersByFilename.getOrDefault(storageFileWrapper.getFileName(), 0L);
+                if (garbage > 0) {
+                    dirtyFilesPaths.add(storageFileWrapper.getFile().getPath());
+                    garbageLines += garbage;
+                }
+            });
+
+            setOfStorageFileWrappers.clear();
+            setOfStorageFileWrappers.addAll(adoptedStorageFileWrappers);
+
+            try {
+                currentStorageFileWrapper = new StorageFileWrapper(storageDirectories.nextSegmentDirectory().getPath());
+            } catch (IOException e) {
+                log.error("Failed to create new storage file", e);
+                System.exit(-1);
+            }
+
+            cleanRawStorageFiles(oldStorageFileWrappers.stream().map(StorageFileWrapper::getFile).toArray(File[]::new));
+
+            retireUnusedDictionaries();
+
+            //writes dropped from the buffers were never published, so one reset covers all changes of the adoption
+            changeFeed.publish(Collections.singletonList(new ChangeEvent(ChangeType.RESET, null, lastSequenceNumber, null, compressionDictionaries::get)));
+        }
+    }
+
+    private static void moveBack(Map<File, File> movedFiles) {
+        movedFiles.forEach((adoptedFile, bulkStorageFile) -> {
+            try {
+                Files.move(adoptedFile.toPath(), bulkStorageFile.toPath());
+            } catch (IOException e) {
+                log.error("Failed to move storage file {} back to {}", adoptedFile, bulkStorageFile, e);
+            }
+        });
+    }
+
+    @Override
+    boolean putHashed(String hashedKey, byte[] value) {
+
+        if (value == null || value.length == 0) {
+            log.warn("Value must be not null or empty");
+            return false;
+        }
+
+        long startNanos = System.nanoTime();
+
+        putElement(hashedKey, compressValue(value));
+
+        loadMonitor.recordOperation(startNanos);
+
+        return true;
+    }
+
+    @Override
+    CompletableFuture<byte[]> getHashedAsync(String hashedKey) {
+
+        long startNanos = System.nanoTime();
+
+        byte[] compressedValue;
+
+        synchronized (lock) {
+            compressedValue = getElementFromMemory(hashedKey);
+        }
+
+        //hits of the read cache and the buffers and missing keys do not wait for the I/O executor
+        if (compressedValue != null) {
+            byte[] decompressedValue = decompressValue(compressedValue);
+            loadMonitor.recordOperation(startNanos);
+            return CompletableFuture.completedFuture(decompressedValue);
+        }
+
+        CompletableFuture<byte[]> inFlightRead = inFlightReads.get(hashedKey);
+
+        if (inFlightRead != null) {
+            return inFlightRead;
+        }
+
+        CompletableFuture<byte[]> read = new CompletableFuture<>();
+
+        inFlightRead = inFlightReads.putIfAbsent(hashedKey, read);
+
+        if (inFlightRead != null) {
+            return inFlightRead;
+        }
+
+        ioExecutor.execute(() -> {
+            try {
+                read.complete(getHashed(hashedKey));
+            } catch (RuntimeException e) {
+                read.completeExceptionally(e);
+            } finally {
+                inFlightReads.remove(hashedKey, read);
+            }
+        });
+
+        return read;
+    }
+
+    @Override
+    CompletableFuture<Boolean> putHashedAsync(String hashedKey, byte[] value) {
+        return CompletableFuture.supplyAsync(() -> putHashed(hashedKey, value), ioExecutor);
+    }
+
+    @Override
+    void deleteHashed(String hashedKey) {
+        synchronized (lock) {
+            deleteElement(hashedKey);
+        }
+    }
+
+    @Override
+    long getVersionHashed(String hashedKey) {
+        synchronized (lock) {
+            return versionOf(hashedKey);
+        }
+    }
+
+    @Override
+    CompareAndSetResult compareAndSetHashed(String hashedKey, long expectedVersion, byte[] value) {
+
+        //compress before taking the lock
+        byte[] compressedValue = value == null || value.length == 0 ? null : compressValue(value);
+
+        synchronized (lock) {
+
+            long currentVersion = versionOf(hashedKey);
+
+            if (currentVersion != expectedVersion) {
+                return new CompareAndSetResult(false, currentVersion);
+            }
+
+            if (compressedValue == null) {
+                deleteElement(hashedKey);
+                return new CompareAndSetResult(true, 0);
+            }
+
+            return new CompareAndSetResult(true, putElement(hashedKey, compressedValue));
+        }
+
+    }
+
+    @Override
+    List<WriteBatch.Operation> compressOperations(List<WriteBatch.Operation> operations) {
+        return operations.stream()
+                .map(operation -> operation.isDelete()
+                        ? operation
+                        : new WriteBatch.Operation(operation.getHashedKey(), compressValue(operation.getValue())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Files have no size limit, so every batch fits.
+     */
+    @Override
+    boolean fits(List<WriteBatch.Operation> compressedOperations) {
+        return true;
+    }
+
+    @Override
+    void applyOperations(List<WriteBatch.Operation> compressedOperations) {
+        compressedOperations.forEach(operation -> {
+            if (operation.isDelete()) {
+                deleteElement(operation.getHashedKey());
+            } else {
+                putElement(operation.getHashedKey(), operation.getValue());
+            }
+        });
+    }
+
+    @Override
+    Object getLock() {
+        return lock;
+    }
+
+    private byte[] compressValue(byte[] value) {
+
+        byte[] compressedValue = null;
+
+        try {
+            compressedValue = CompressionUtil.compress(value, compressionDictionaries.dictionaryFor(value));
+        } catch (IOException e) {
+            log.error("Failed to compress data", e);
+            System.exit(-1);
+        }
+
+        return compressedValue;
+    }
+
+    @Override
+    byte[] getHashed(String hashedKey) {
+
+        long startNanos = System.nanoTime();
+
+        byte[] decompressedValue = decompressValue(getElement(hashedKey));
+
+        loadMonitor.recordOperation(startNanos);
+
+        return decompressedValue;
+
+
+    }
+
+    private byte[] decompressValue(byte[] compressedValue) {
+
+        byte[] decompressedValue = new byte[0];
+
+        try {
+
+            if (compressedValue != null && compressedValue.length != 0) {
+                decompressedValue = CompressionUtil.decompress(compressedValue, compressionDictionaries::get);
+            }
+
+        } catch (DataFormatException | IOException e) {
+            log.error("Failed to decompress data", e);
+            System.exit(-1);
+        }
+
+        return decompressedValue;
+    }
+
+    private void flushBuffers() {
+        synchronized (lock) {
+
+            List<ChangeEvent> changes = new ArrayList<>(writeBuffer.size() + editBuffer.size() + pendingDeletes.size());
+
+            dumpWriteBufferToDisk(changes);
+            dumpEditBufferToDisk(changes);
+
+            changes.addAll(pendingDeletes);
+            pendingDeletes.clear();
+
+            //everything written before this flush is older than anything written after it,
+            //so sorting the changes of one flush keeps the whole feed in the order of the writes
+            changes.sort(Comparator.comparingLong(ChangeEvent::getVersion));
+            changeFeed.publish(changes);
+
+            bufferedBytes = 0;
+            oldestBufferedWriteMillis = 0;
+
+        }
+    }
+
+    private void dumpWriteBufferToDisk(List<ChangeEvent> changes) {
+        synchronized (lock) {
+
+            if (!writeBuffer.isEmpty()) {
+
+                currentStorageFileWrapper = createNewStorageFileIfNeeded(currentStorageFileWrapper);
+
+                //write buffer elements to current storage file
+                //add hashes to in memory index
+                writeBuffer.forEach((key, versionedValue) -> {
+                    try {
+
+                        currentStorageFileWrapper = createNewStorageFileIfNeeded(currentStorageFileWrapper);
+
+                        long initialLine = currentStorageFileWrapper.getNumberOfLines();
+
+                        currentStorageFileWrapper.appendLine(key + '|' + DatatypeConverter.printHexBinary(versionedValue.getValue()), System.lineSeparator());
+
+                        inMemoryIndex.put(key, new ValuePointer(currentStorageFileWrapper.getFileName(), initialLine,
+                                currentStorageFileWrapper.getDirectoryPath(), versionedValue.getSequenceNumber(),
+                                CompressionUtil.dictionaryId(versionedValue.getValue())));
+
+                        changes.add(new ChangeEvent(ChangeType.PUT, key, versionedValue.getSequenceNumber(), versionedValue.getValue(),
+                                compressionDictionaries::get));
+
+                    } catch (IOException e) {
+                        log.error("Failed to write into storage file from write buffer", e);
+                        System.exit(-1);
+                    }
+                });
+
+                writeBuffer.clear();
+                indexDirty = true;
+            }
+
+        }
+    }
+
+    private void dumpEditBufferToDisk(List<ChangeEvent> changes) {
+        synchronized (lock) {
+
+            if (!editBuffer.isEmpty()) {
+
+                currentStorageFileWrapper = createNewStorageFileIfNeeded(currentStorageFileWrapper);
+
+                editBuffer.forEach((key, versionedValue) -> {
+
+                    try {
+
+                        currentStorageFileWrapper = createNewStorageFileIfNeeded(currentStorageFileWrapper);
+
+                        long initialLine = currentStorageFileWrapper.getNumberOfLines();
+
+                        currentStorageFileWrapper.appendLine(key + '|' + DatatypeConverter.printHexBinary(versionedValue.getValue()), System.lineSeparator());
+
+                        //the file with the previous value now holds garbage
+                        ValuePointer oldValuePointer = inMemoryIndex.get(key);
+
+                        if (oldValuePointer != null) {
+                            dirtyFilesPaths.add(oldValuePointer.getFile().getPath());
+                            garbageLines++;
+                        }
+
+                        inMemoryIndex.put(key, new ValuePointer(currentStorageFileWrapper.getFileName(), initialLine,
+                                currentStorageFileWrapper.getDirectoryPath(), versionedValue.getSequenceNumber(),
+                                CompressionUtil.dictionaryId(versionedValue.getValue())));
+
+                        changes.add(new ChangeEvent(oldValuePointer != null ? ChangeType.OVERWRITE : ChangeType.PUT, key,
+                                versionedValue.getSequenceNumber(), versionedValue.getValue(), compressionDictionaries::get));
+
+                    } catch (IOException e) {
+                        log.error("Failed to write into storage file from edit buffer", e);
+                        System.exit(-1);
+                    }
+                });
+
+                editBuffer.clear();
+                indexDirty = true;
+
+            }
+
+        }
+    }
+
+    private void dumpIndexToDisk() {
+        synchronized (lock) {
+
+            if (indexDirty) {
+                index.writeIndexOnDisk(inMemoryIndex);
+                indexDirty = false;
+            }
+
+        }
+    }
+
+    private void gc() {
+        synchronized (lock) {
+            if (dirtyFilesPaths.isEmpty()) {
+                return;
+            }
+
+            fileRewriteCount++;
+
+            dirtyFilesPaths.forEach(this::cleanDirtyFile);
+
+            dirtyFilesPaths.clear();
+            garbageLines = 0;
+
+            //cleaning moves lines, so the index on disk must follow right away
+            index.writeIndexOnDisk(inMemoryIndex);
+            indexDirty = false;
+
+            retireUnusedDictionaries();
+
+        }
+    }
+
+    /**
+     * Deletes the compression dictionaries no value in the index or the buffers is compressed with.
+     */
+    private void retireUnusedDictionaries() {
+        synchronized (lock) {
+
+            Set<Integer> liveDictionaryIds = inMemoryIndex.values().stream()
+                    .map(ValuePointer::getDictionaryId)
+                    .collect(Collectors.toSet());
+
+            Stream.concat(writeBuffer.values().stream(), editBuffer.values().stream())
+                    .forEach(versionedValue -> liveDictionaryIds.add(CompressionUtil.dictionaryId(versionedValue.getValue())));
+
+            compressionDictionaries.retain(liveDictionaryIds);
+        }
+    }
+
+    private StorageFileWrapper createNewStorageFileIfNeeded(StorageFileWrapper storageFileWrapper) {
+
+        if (storageFileWrapper.getSizeInBytes() > storageFileRecommendedSize) {
+
+            setOfStorageFileWrappers.add(storageFileWrapper);
+
+            //every storage file starts a new dictionary generation
+            compressionDictionaries.newGeneration();
+
+            try {
+                return new StorageFileWrapper(storageDirectories.nextSegmentDirectory().getPath());
+            } catch (IOException e) {
+                log.error("Failed to create new storage file", e);
+            }
+        }
+
+        return storageFileWrapper;
+    }
+
+    private void cleanDirtyFile(String dirtyFileName) {
+
+        try {
+
+            File dirtyFile = new File(dirtyFileName);
+
+            //the current storage file must be cleaned through its own wrapper, so its line count stays right
+            StorageFileWrapper dirtyStorageFileWrapper = dirtyFile.equals(currentStorageFileWrapper.getFile())
+                    ? currentStorageFileWrapper
+                    : new StorageFileWrapper(dirtyFile);
+
+            List<String> lines = dirtyStorageFileWrapper.allLines();
+
+            log.info("Read content of dirty storage file to memory");
+
+            //keep only the lines the index still points to, overwritten and deleted values are dropped
+            List<String> liveLines = IntStream.range(0, lines.size())
+                    .filter(i -> {
+                        ValuePointer valuePointer = inMemoryIndex.get(lines.get(i).split("\\|")[0]);
+                        return valuePointer != null
+                                && valuePointer.getFile().equals(dirtyStorageFileWrapper.getFile())
+                                && valuePointer.getLineNumber() == i + 1;
+                    })
+                    .mapToObj(lines::get)
+                    .collect(Collectors.toList());
+
+            //a file with no live values left is dropped, reads which still point into it see the changed rewrite count and read again
+            if (liveLines.isEmpty() && dirtyStorageFileWrapper != currentStorageFileWrapper) {
+                Files.delete(dirtyFile.toPath());
+                setOfStorageFileWrappers.removeIf(storageFileWrapper -> storageFileWrapper.getFile().equals(dirtyFile));
+                log.info("Deleted the storage file with no live values");
+                return;
+            }
+
+            dirtyStorageFileWrapper.truncate();
+
+            log.info("Truncated the dirty storage file");
+
+            liveLines.forEach(line -> {
+                try {
+
+                    long lineNumber = dirtyStorageFileWrapper.getNumberOfLines();
+
+                    dirtyStorageFileWrapper.appendLine(line, System.lineSeparator());
+
+                    String key = line.split("\\|")[0];
+                    ValuePointer oldValuePointer = inMemoryIndex.get(key);
+
+                    inMemoryIndex.put(key, new ValuePointer(oldValuePointer.getFilename(), lineNumber,
+                            oldValuePointer.getDirectory(), oldValuePointer.getSequenceNumber(), oldValuePointer.getDictionaryId()));
+
+                } catch (IOException e) {
+                    log.error("Failed to write into temp file from dirty file", e);
+                    System.exit(-1);
+                }
+            });
+
+            log.info("Wrote clean content to storage file");
+
+        } catch (IOException e) {
+            log.error("Failed to read lines from a file", e);
+            System.exit(-1);
+        }
+    }
+
+    private String readLineFromFile(File file, long lineNumber) {
+        try (Stream<String> lines = Files.lines(Paths.get(file.getPath()))) {
+            Optional<String> optionalLine = lines.skip(lineNumber - 1).findFirst();
+            if (optionalLine.isPresent()) {
+                return optionalLine.get();
+            }
+        } catch (NoSuchFileException e) {
+            //the file was replaced by an adoption, the caller sees the changed rewrite count and reads again
+            return null;
+        } catch (IOException e) {
+            log.error("Failed to read a line from file");
+            System.exit(-1);
+        }
+        return null;
+    }
+
+    private long putElement(String hash, byte[] value) {
+
+        synchronized (lock) {
+
+            VersionedValue versionedValue = new VersionedValue(value, ++lastSequenceNumber);
+
+            //the cached value is stale now, and gets from now on must not join a read of the old value
+            readCache.invalidate(hash);
+            inFlightReads.remove(hash);
+
+            VersionedValue replacedValue = inMemoryIndex.containsKey(hash)
+                    ? editBuffer.put(hash, versionedValue)
+                    : writeBuffer.put(hash, versionedValue);
+
+            bufferedBytes += value.length - (replacedValue == null ? 0 : replacedValue.getValue().length);
+
+            if (oldestBufferedWriteMillis == 0) {
+                oldestBufferedWriteMillis = System.currentTimeMillis();
+            }
+
+            loadMonitor.recordWrite();
+
+            return versionedValue.getSequenceNumber();
+        }
+
+    }
+
+    private void deleteElement(String hash) {
+
+        synchronized (lock) {
+
+            ++lastSequenceNumber;
+
+            VersionedValue removedValue = writeBuffer.containsKey(hash) ? writeBuffer.remove(hash) : editBuffer.remove(hash);
+
+            if (removedValue != null) {
+                bufferedBytes -= removedValue.getValue().length;
+            }
+
+            readCache.invalidate(hash);
+            inFlightReads.remove(hash);
+
+            //the line stays in the storage file until the garbage collection drops it
+            ValuePointer valuePointer = inMemoryIndex.remove(hash);
+
+            if (valuePointer != null) {
+                dirtyFilesPaths.add(valuePointer.getFile().getPath());
+                garbageLines++;
+                indexDirty = true;
+            }
+
+            //a key which was only buffered was readable as well, so watchers may have seen it
+            if (removedValue != null || valuePointer != null) {
+
+                pendingDeletes.add(new ChangeEvent(ChangeType.DELETE, hash, lastSequenceNumber, null, compressionDictionaries::get));
+
+                //the delete is published with a flush, so it must not wait longer than a buffered write
+                if (oldestBufferedWriteMillis == 0) {
+                    oldestBufferedWriteMillis = System.currentTimeMillis();
+                }
+            }
+
+            loadMonitor.recordWrite();
+        }
+
+    }
+
+    private long versionOf(String hash) {
+
+        if (writeBuffer.containsKey(hash)) {
+            return writeBuffer.get(hash).getSequenceNumber();
+        }
+        if (editBuffer.containsKey(hash)) {
+            return editBuffer.get(hash).getSequenceNumber();
+        }
+        if (inMemoryIndex.containsKey(hash)) {
+            return inMemoryIndex.get(hash).getSequenceNumber();
+        }
+
+        return 0;
+    }
+
+    /**
+     * Looks the value up in the read cache and the buffers, the caller holds the lock.
+     *
+     * @return the compressed value, an empty array if there is no such key, or null if the value must be read from disk
+     */
+    private byte[] getElementFromMemory(String hash) {
+
+        byte[] cachedValue = readCache.getIfPresent(hash);
+        if (cachedValue != null) {
+            return cachedValue;
+        }
+        if (writeBuffer.containsKey(hash)) {
+            byte[] compressedValue = writeBuffer.get(hash).getValue();
+            readCache.put(hash, compressedValue);
+            return compressedValue;
+        }
+        if (editBuffer.containsKey(hash)) {
+            byte[] compressedValue = editBuffer.get(hash).getValue();
+            readCache.put(hash, compressedValue);
+            return compressedValue;
+        }
+        if (!inMemoryIndex.containsKey(hash)) {
+            log.info("No value found for hashed key: {}", hash);
+            return new byte[0];
+        }
+
+        return null;
+    }
+
+    private byte[] getElement(String hash) {
+
+        while (true) {
+
+            ValuePointer valuePointer;
+            long rewriteCount;
+
+            synchronized (lock) {
+
+                byte[] compressedValue = getElementFromMemory(hash);
+
+                if (compressedValue != null) {
+                    return compressedValue;
+                }
+
+                valuePointer = inMemoryIndex.get(hash);
+                rewriteCount = fileRewriteCount;
+            }
+
+            //the disk is read without the lock, so flushes and other keys are not blocked by it
+            String line = readLineFromFile(valuePointer.getFile(), valuePointer.getLineNumber());
+
+            synchronized (lock) {
+
+                //the garbage collection moved lines or the key was written meanwhile, so the read starts over
+                if (rewriteCount != fileRewriteCount
+                        || !valuePointer.equals(inMemoryIndex.get(hash))
+                        || versionOf(hash) != valuePointer.getSequenceNumber()) {
+                    continue;
+                }
+
+                //a line of another key means the pointer is stale, e.g. after a crash between cleaning and writing the index
+                if (line != null && line.startsWith(hash + '|')) {
+                    String hexedData = line.split("\\|")[1];
+
+                    byte[] compressedValue = DatatypeConverter.parseHexBinary(hexedData);
+
+                    readCache.put(hash, compressedValue);
+                    return compressedValue;
+                }
+
+                log.info("No value found for hashed key: {}", hash);
+                return new byte[0];
+            }
+        }
+
+    }
+
+    private void loadIndexAndStorage(StorageDirectories storageDirectories, IndexFileWrapper index) {
+
+        //storage files can be placed in any of the data directories
+        File[] allRawStorageFiles = storageDirectories.getDirectories().stream()
+                .map(directory -> directory.listFiles((dir, name) -> name.startsWith("s") && name.endsWith(FILE_EXTENSION)))
+                .filter(Objects::nonNull)
+                .flatMap(Arrays::stream)
+                .toArray(File[]::new);
+
+        if (index.exists() && allRawStorageFiles.length != 0) {
+
+            List<StorageFileWrapper> storageFileWrappers = Arrays.stream(allRawStorageFiles)
+                    .filter(File::exists)
+                    .map(rawStorageFile -> {
+                        try {
+                            return new StorageFileWrapper(rawStorageFile);
+                        } catch (IOException e) {
+                            log.error("Failed to create StorageFileWrapper", e);
+                        }
+
+                        return null;
+                    }).filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+
+            setOfStorageFileWrappers.addAll(storageFileWrappers);
+
+            //read index into memory
+            inMemoryIndex = index.loadIndex();
+
+            //choose smallest storage file as a current storage file
+            StorageFileWrapper smallestStorageFileWrapper = storageFileWrappers.stream().min(Comparator.comparing(
+                    StorageFileWrapper::getNumberOfLines
+            )).orElseGet(null);
+
+            currentStorageFileWrapper = createNewStorageFileIfNeeded(smallestStorageFileWrapper);
+
+        } else {
+
+            if (index.exists()) {
+
+                //if there is no storage file, delete the index
+                if (allRawStorageFiles.length == 0 || currentStorageFileWrapper == null) {
+                    index.deleteIndex();
+                }
+
+            } else {
+
+                checkNoIndexElsewhere(storageDirectories);
+
+                //without an index the files of the primary directory can not be read, files of other directories are never touched
+                cleanRawStorageFiles(Arrays.stream(allRawStorageFiles)
+                        .filter(file -> storageDirectories.primary().equals(file.getParentFile()))
+                        .toArray(File[]::new));
+            }
+
+            //create index
+            index.createIndex();
+
+            //create 1 storage file
+            try {
+                currentStorageFileWrapper = new StorageFileWrapper(storageDirectories.nextSegmentDirectory().getPath());
+            } catch (IOException e) {
+                log.error("Failed to create new StorageFileWrapper");
+                System.exit(-1);
+            }
+        }
+    }
+
+    /**
+     * The index is kept in the first data directory, so an index or storage files found only in the other ones
+     * mean the directories were reordered or the index was lost. Starting empty would orphan or delete the data.
+     */
+    private void checkNoIndexElsewhere(StorageDirectories storageDirectories) {
+
+        for (File directory : storageDirectories.getDirectories()) {
+
+            if (directory.equals(storageDirectories.primary())) {
+                continue;
+            }
+
+            if (new IndexFileWrapper(directory.getPath()).exists()) {
+                log.error("Index found in {}, but it must be in the first data directory {}", directory, storageDirectories.primary());
+                System.exit(-1);
+            }
+
+            File[] storageFiles = directory.listFiles((dir, name) -> name.startsWith("s") && name.endsWith(FILE_EXTENSION));
+
+            if (storageFiles != null && storageFiles.length != 0) {
+                log.error("No index in {}, but data directory {} has storage files", storageDirectories.primary(), directory);
+                System.exit(-1);
+            }
+        }
+    }
+
+    private void cleanRawStorageFiles(File[] files) {
+        if (files != null && files.length != 0) {
+            for (File file : files) {
+                boolean fileWasDeleted = file.delete();
+                if (fileWasDeleted) {
+                    log.info("Storage file was deleted");
+                } else {
+                    log.error("Failed to delete storage file");
+                }
+            }
+        }
+    }
+
+    private double garbageRatio() {
+        synchronized (lock) {
+            long allLines = inMemoryIndex.size() + garbageLines;
+            return allLines == 0 ? 0 : (double) garbageLines / allLines;
+        }
+    }
+
+    private final class AllyScheduledWork implements ScheduledWork {
+
+        @Override
+        public long bufferedBytes() {
+            return bufferedBytes;
+        }
+
+        @Override
+        public long oldestBufferedWriteMillis() {
+            return oldestBufferedWriteMillis;
+        }
+
+        @Override
+        public boolean indexDirty() {
+            return indexDirty;
+        }
+
+        @Override
+        public double garbageRatio() {
+            return Ally.this.garbageRatio();
+        }
+
+        @Override
+        public void flushBuffers() {
+            Ally.this.flushBuffers();
+        }
+
+        @Override
+        public void checkpointIndex() {
+            dumpIndexToDisk();
+        }
+
+        @Override
+        public void collectGarbage() {
+            gc();
+        }
+    }
+
+}
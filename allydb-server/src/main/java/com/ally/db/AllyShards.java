@@ -0,0 +1,343 @@
+package com.ally.db;
+
+import com.ally.db.compression.DictionaryPolicy;
+import com.ally.db.feed.ChangeFeed;
+import com.ally.db.feed.Subscription;
+import com.ally.db.memory.MemoryPolicy;
+import com.ally.db.scheduler.FlushPolicy;
+import com.ally.db.storage.SegmentPlacement;
+import com.ally.db.util.HashUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Runs N independent partitions, each with its own directories, buffers,
+ * read cache, index and scheduled jobs, and routes every key to one of them
+ * by the prefix of its hash. Every partition spreads its storage files over all data directories.
+ * Depending on the engine mode the partitions are disk based {@link Ally} or in-memory {@link MemoryAlly}.
+ */
+@Slf4j
+public final class AllyShards {
+
+    private static final String PARTITION_DIRECTORY_PREFIX = "partition_";
+    private static final String INDEX_FILE_NAME = "index.abby";
+    private static final String STORAGE_FILE_PREFIX = "s";
+    private static final String FILE_EXTENSION = ".abby";
+    private static final String BULK_LOAD_DIRECTORY = "bulk_load";
+
+    private final List<Partition> partitions;
+    private final String primaryDirectoryPath;
+    private final ChangeFeed changeFeed;
+
+    public AllyShards(EngineMode engineMode, List<String> dbDirectoryPaths, SegmentPlacement segmentPlacement, FlushPolicy flushPolicy,
+                      DictionaryPolicy dictionaryPolicy, MemoryPolicy memoryPolicy, ChangeFeed changeFeed, int numberOfPartitions, int ioThreads, int readCacheSize, int writeBufferSize, int editBufferSize, long storageFileRecommendedSize) {
+
+        if (numberOfPartitions < 1) {
+            log.error("Number of partitions must be positive");
+            System.exit(-1);
+        }
+
+        dbDirectoryPaths.forEach(dbDirectoryPath -> checkExistingPartitions(dbDirectoryPath, numberOfPartitions));
+
+        primaryDirectoryPath = dbDirectoryPaths.get(0);
+
+        //all partitions publish their committed writes to one feed
+        this.changeFeed = changeFeed;
+
+        //the read cache size is a total for the whole server, so it is split between partitions
+        int partitionReadCacheSize = Math.max(1, readCacheSize / numberOfPartitions);
+
+        //all partitions share one I/O executor for asynchronous operations
+        ExecutorService ioExecutor = Executors.newFixedThreadPool(ioThreads);
+
+        //the memory limit is a total for the whole server as well
+        long partitionMaxBytes = memoryPolicy.getMaxBytes() / numberOfPartitions;
+
+        List<Partition> allies = new ArrayList<>(numberOfPartitions);
+
+        for (int i = 0; i < numberOfPartitions; i++) {
+            if (engineMode == EngineMode.MEMORY) {
+                allies.add(new MemoryAlly(partitionDirectoryPath(dbDirectoryPaths.get(0), i, numberOfPartitions), memoryPolicy, partitionMaxBytes, changeFeed));
+            } else {
+                allies.add(new Ally(partitionDirectoryPaths(dbDirectoryPaths, i, numberOfPartitions), segmentPlacement, flushPolicy, dictionaryPolicy,
+                        changeFeed, ioExecutor, partitionReadCacheSize, writeBufferSize, editBufferSize, storageFileRecommendedSize));
+            }
+        }
+
+        partitions = Collections.unmodifiableList(allies);
+
+        log.info("Started {} {} partition(s)", numberOfPartitions, engineMode.name().toLowerCase());
+    }
+
+    /**
+     * @return false if the value was not stored, e.g. it is empty or larger than a slab of the in-memory engine
+     */
+    public boolean put(byte[] key, byte[] value) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return partitionFor(hashedKey).putHashed(hashedKey, value);
+    }
+
+    public byte[] get(byte[] key) {
+
+        if (key == null || key.length == 0) {
+            log.error("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return partitionFor(hashedKey).getHashed(hashedKey);
+    }
+
+    public CompletableFuture<byte[]> getAsync(byte[] key) {
+
+        if (key == null || key.length == 0) {
+            log.error("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return partitionFor(hashedKey).getHashedAsync(hashedKey);
+    }
+
+    public CompletableFuture<Boolean> putAsync(byte[] key, byte[] value) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return partitionFor(hashedKey).putHashedAsync(hashedKey, value);
+    }
+
+    public void delete(byte[] key) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        partitionFor(hashedKey).deleteHashed(hashedKey);
+    }
+
+    public long getVersion(byte[] key) {
+
+        if (key == null || key.length == 0) {
+            log.error("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return partitionFor(hashedKey).getVersionHashed(hashedKey);
+    }
+
+    public CompareAndSetResult compareAndSet(byte[] key, long expectedVersion, byte[] value) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(key);
+
+        return partitionFor(hashedKey).compareAndSetHashed(hashedKey, expectedVersion, value);
+    }
+
+    /**
+     * Splits the batch by partition and applies all parts while holding the locks of every involved partition,
+     * so the batch becomes visible at once even if it spans several partitions.
+     *
+     * @return false if a value does not fit or the batch was rejected, none of the operations is applied then
+     */
+    public boolean write(WriteBatch writeBatch) {
+
+        if (writeBatch.isRejected()) {
+            log.warn("The batch has an empty value and is not applied");
+            return false;
+        }
+
+        //sorted by partition number, so the locks are always taken in the same order
+        Map<Integer, List<WriteBatch.Operation>> operationsByPartition = new TreeMap<>();
+
+        writeBatch.getOperations().forEach(operation -> operationsByPartition
+                .computeIfAbsent(HashUtil.getPartition(operation.getHashedKey(), partitions.size()), partition -> new ArrayList<>())
+                .add(operation));
+
+        Map<Integer, List<WriteBatch.Operation>> compressedOperationsByPartition = new TreeMap<>();
+
+        operationsByPartition.forEach((partition, operations) ->
+                compressedOperationsByPartition.put(partition, partitions.get(partition).compressOperations(operations)));
+
+        return withLocks(new ArrayList<>(compressedOperationsByPartition.keySet()), 0, () -> {
+
+            if (!compressedOperationsByPartition.entrySet().stream()
+                    .allMatch(entry -> partitions.get(entry.getKey()).fits(entry.getValue()))) {
+                log.warn("A value of the batch does not fit, the batch is not applied");
+                return false;
+            }
+
+            compressedOperationsByPartition.forEach((partition, operations) -> partitions.get(partition).applyOperations(operations));
+            return true;
+        });
+    }
+
+    /**
+     * Subscribes to committed writes, see {@link ChangeFeed#subscribe(long)}.
+     */
+    public Optional<Subscription> watch(long fromSequenceNumber) {
+        return changeFeed.subscribe(fromSequenceNumber);
+    }
+
+    /**
+     * Replaces all values with the output of the {@link BulkLoader}, written for the same number of partitions.
+     * The output of every partition is checked and moved into place first, then all partitions switch to their new values
+     * while holding the locks of every partition, so readers see either all old or all new values.
+     * If the output of any partition can not be adopted, no partition is changed.
+     */
+    public boolean adopt(String bulkDirectoryPath) {
+
+        File[] bulkPartitions = new File(bulkDirectoryPath).listFiles(file -> file.isDirectory() && file.getName().startsWith(PARTITION_DIRECTORY_PREFIX));
+        int numberOfBulkPartitions = bulkPartitions == null || bulkPartitions.length == 0 ? 1 : bulkPartitions.length;
+
+        if (numberOfBulkPartitions != partitions.size()) {
+            log.error("Bulk load output has {} partitions, but {} are configured", numberOfBulkPartitions, partitions.size());
+            return false;
+        }
+
+        List<Adoption> adoptions = new ArrayList<>(partitions.size());
+
+        for (int i = 0; i < partitions.size(); i++) {
+
+            Adoption adoption = partitions.get(i).prepareAdoption(partitionDirectoryPath(bulkDirectoryPath, i, partitions.size()));
+
+            if (adoption == null) {
+                adoptions.forEach(Adoption::abort);
+                return false;
+            }
+
+            adoptions.add(adoption);
+        }
+
+        List<Integer> allPartitions = IntStream.range(0, partitions.size()).boxed().collect(Collectors.toList());
+
+        return withLocks(allPartitions, 0, () -> {
+            adoptions.forEach(Adoption::commit);
+            return true;
+        });
+    }
+
+    /**
+     * Loads the key/value stream with the {@link BulkLoader} next to the primary directory and adopts the output.
+     */
+    public boolean bulkLoad(InputStream input, long segmentSize) throws IOException {
+
+        String bulkDirectoryPath = bulkLoadDirectoryPath();
+
+        new BulkLoader(bulkDirectoryPath, partitions.size(), segmentSize).load(input);
+
+        boolean adopted = adopt(bulkDirectoryPath);
+
+        //only empty directories are left after the adoption
+        for (int i = 0; i < partitions.size(); i++) {
+            new File(partitionDirectoryPath(bulkDirectoryPath, i, partitions.size())).delete();
+        }
+        new File(bulkDirectoryPath).delete();
+
+        return adopted;
+    }
+
+    /**
+     * The directory in the primary directory where the {@link BulkLoader} writes by default,
+     * and the only one whose output the adopt call of the gRPC interface takes over.
+     */
+    public String bulkLoadDirectoryPath() {
+        return bulkLoadDirectoryPath(primaryDirectoryPath);
+    }
+
+    static String bulkLoadDirectoryPath(String primaryDirectoryPath) {
+        return primaryDirectoryPath + File.separator + BULK_LOAD_DIRECTORY;
+    }
+
+    public int numberOfPartitions() {
+        return partitions.size();
+    }
+
+    private Partition partitionFor(String hashedKey) {
+        return partitions.get(HashUtil.getPartition(hashedKey, partitions.size()));
+    }
+
+    /**
+     * Takes the locks of the partitions in the given order and runs the action while holding all of them.
+     */
+    private <T> T withLocks(List<Integer> involvedPartitions, int position, Supplier<T> action) {
+
+        if (position == involvedPartitions.size()) {
+            return action.get();
+        }
+
+        synchronized (partitions.get(involvedPartitions.get(position)).getLock()) {
+            return withLocks(involvedPartitions, position + 1, action);
+        }
+    }
+
+    static List<String> partitionDirectoryPaths(List<String> dbDirectoryPaths, int partition, int numberOfPartitions) {
+        return dbDirectoryPaths.stream()
+                .map(dbDirectoryPath -> partitionDirectoryPath(dbDirectoryPath, partition, numberOfPartitions))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * A single partition keeps using the db directory itself, so existing databases load as before.
+     */
+    static String partitionDirectoryPath(String dbDirectoryPath, int partition, int numberOfPartitions) {
+        if (numberOfPartitions == 1) {
+            return dbDirectoryPath;
+        }
+        return dbDirectoryPath + File.separator + PARTITION_DIRECTORY_PREFIX + partition;
+    }
+
+    private static void checkExistingPartitions(String dbDirectoryPath, int numberOfPartitions) {
+
+        File[] existingPartitions = new File(dbDirectoryPath).listFiles(file -> file.isDirectory() && file.getName().startsWith(PARTITION_DIRECTORY_PREFIX));
+
+        int numberOfExistingPartitions = existingPartitions == null ? 0 : existingPartitions.length;
+
+        //a database written with one partition keeps its index and storage files directly in the directory
+        File[] rootFiles = new File(dbDirectoryPath).listFiles(file -> file.isFile() && isIndexOrStorageFile(file.getName()));
+
+        if (rootFiles != null && rootFiles.length != 0) {
+            numberOfExistingPartitions++;
+        }
+
+        //keys are routed by hash modulo the number of partitions, so the number can not change for an existing database
+        if (numberOfExistingPartitions != 0 && numberOfExistingPartitions != numberOfPartitions) {
+            log.error("Database has {} partitions, but {} are configured", numberOfExistingPartitions, numberOfPartitions);
+            System.exit(-1);
+        }
+    }
+
+    static boolean isIndexOrStorageFile(String fileName) {
+        return fileName.endsWith(FILE_EXTENSION) && (fileName.equals(INDEX_FILE_NAME) || fileName.startsWith(STORAGE_FILE_PREFIX));
+    }
+}
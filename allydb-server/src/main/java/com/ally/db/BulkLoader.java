@@ -0,0 +1,217 @@
+package com.ally.db;
+
+import com.ally.db.index.IndexFileWrapper;
+import com.ally.db.index.ValuePointer;
+import com.ally.db.storage.SegmentWriter;
+import com.ally.db.util.CompressionUtil;
+import com.ally.db.util.HashUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.xml.bind.DatatypeConverter;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Offline loader, which turns a stream of keys and values into storage files and an index,
+ * without going through buffers, flushes and per value file writes. Keys are hashed and values are
+ * compressed in parallel, storage files are written sequentially and the index of every partition
+ * is written in one pass at the end. A running storage takes the output over with {@link AllyShards#adopt(String)}.
+ * <p>
+ * Input: one {@code key<TAB>value} pair per line, in UTF-8. If a key repeats, its last value wins.
+ */
+@Slf4j
+public final class BulkLoader {
+
+    private static final int CHUNK_SIZE = 8192;
+    private static final char SEPARATOR = '\t';
+    private static final String STDIN = "-";
+
+    private final String outputDirectoryPath;
+    private final int numberOfPartitions;
+    private final long segmentSize;
+
+    private final List<SegmentWriter> segmentWriters = new ArrayList<>();
+    private final List<Map<String, ValuePointer>> indexes = new ArrayList<>();
+
+    private long lastSequenceNumber;
+    private long skippedLines;
+
+    public BulkLoader(String outputDirectoryPath, int numberOfPartitions, long segmentSize) {
+        this.outputDirectoryPath = outputDirectoryPath;
+        this.numberOfPartitions = numberOfPartitions;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Usage: {@code BulkLoader <input file or - for stdin> [output directory]}.
+     * The output goes by default to the bulk load directory of the storage, which the adopt call of a running server takes it from.
+     * The number of partitions, the data directories and the storage file size are taken from ally.properties.
+     */
+    public static void main(String[] args) {
+
+        if (args.length != 1 && args.length != 2) {
+            log.error("Usage: BulkLoader <input file or - for stdin> [output directory]");
+            System.exit(-1);
+        }
+
+        String outputDirectoryPath = args.length == 2 ? args[1] : AllyShards.bulkLoadDirectoryPath(ConfigLoader.DB_DIRECTORIES().get(0));
+
+        BulkLoader bulkLoader = new BulkLoader(outputDirectoryPath, ConfigLoader.PARTITIONS(), ConfigLoader.BULK_SEGMENT_SIZE());
+
+        try (InputStream input = STDIN.equals(args[0]) ? System.in : Files.newInputStream(Paths.get(args[0]))) {
+            bulkLoader.load(input);
+        } catch (IOException e) {
+            log.error("Failed to read input", e);
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Loads all pairs of the input and returns the number of distinct keys.
+     * The index of a partition is written last, so an output directory with an index is complete.
+     * Refuses an output directory which already holds an index or storage files, e.g. of an earlier run or a failed adoption.
+     */
+    public long load(InputStream input) throws IOException {
+
+        long startMillis = System.currentTimeMillis();
+
+        //sequence numbers start from the wall clock in microseconds, like the ones of a running storage
+        lastSequenceNumber = TimeUnit.MILLISECONDS.toMicros(startMillis);
+
+        //files left over would be adopted along with the new ones, as storage files full of garbage
+        for (int i = 0; i < numberOfPartitions; i++) {
+            File partitionDirectory = new File(AllyShards.partitionDirectoryPath(outputDirectoryPath, i, numberOfPartitions));
+            File[] existingFiles = partitionDirectory.listFiles(file -> file.isFile() && AllyShards.isIndexOrStorageFile(file.getName()));
+            if (existingFiles != null && existingFiles.length != 0) {
+                throw new IOException("Output directory " + partitionDirectory + " already contains an index or storage files");
+            }
+        }
+
+        for (int i = 0; i < numberOfPartitions; i++) {
+            File partitionDirectory = new File(AllyShards.partitionDirectoryPath(outputDirectoryPath, i, numberOfPartitions));
+            if (!partitionDirectory.exists()) {
+                partitionDirectory.mkdirs();
+            }
+            segmentWriters.add(new SegmentWriter(partitionDirectory.getPath(), segmentSize));
+            indexes.add(new HashMap<>());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+
+            //the next chunk is hashed and compressed while the previous one is written
+            Future<List<Record>> previousChunk = null;
+
+            List<String> chunk = readChunk(reader);
+
+            while (!chunk.isEmpty()) {
+
+                List<String> lines = chunk;
+                Future<List<Record>> currentChunk = pool.submit(() -> lines.parallelStream()
+                        .map(this::toRecord)
+                        .collect(Collectors.toList()));
+
+                if (previousChunk != null) {
+                    writeRecords(previousChunk.get());
+                }
+
+                previousChunk = currentChunk;
+                chunk = readChunk(reader);
+            }
+
+            if (previousChunk != null) {
+                writeRecords(previousChunk.get());
+            }
+
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException("Failed to hash and compress input", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        long numberOfKeys = 0;
+
+        for (int i = 0; i < numberOfPartitions; i++) {
+            segmentWriters.get(i).close();
+            new IndexFileWrapper(AllyShards.partitionDirectoryPath(outputDirectoryPath, i, numberOfPartitions)).writeIndexOnDisk(indexes.get(i));
+            numberOfKeys += indexes.get(i).size();
+        }
+
+        log.info("Loaded {} keys in {} ms, skipped {} malformed lines", numberOfKeys, System.currentTimeMillis() - startMillis, skippedLines);
+
+        return numberOfKeys;
+    }
+
+    private List<String> readChunk(BufferedReader reader) throws IOException {
+
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        String line;
+        while (chunk.size() < CHUNK_SIZE && (line = reader.readLine()) != null) {
+            chunk.add(line);
+        }
+
+        return chunk;
+    }
+
+    private Record toRecord(String line) {
+
+        int separatorIndex = line.indexOf(SEPARATOR);
+
+        if (separatorIndex <= 0 || separatorIndex == line.length() - 1) {
+            return null;
+        }
+
+        String hashedKey = HashUtil.getSHA256Hash(line.substring(0, separatorIndex).getBytes(StandardCharsets.UTF_8));
+
+        try {
+            byte[] compressedValue = CompressionUtil.compress(line.substring(separatorIndex + 1).getBytes(StandardCharsets.UTF_8));
+            return new Record(hashedKey, DatatypeConverter.printHexBinary(compressedValue));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeRecords(List<Record> records) throws IOException {
+
+        for (Record record : records) {
+
+            if (record == null) {
+                skippedLines++;
+                continue;
+            }
+
+            int partition = HashUtil.getPartition(record.getHashedKey(), numberOfPartitions);
+
+            //a repeated key leaves its previous line as garbage, which the storage collects after adopting the files
+            indexes.get(partition).put(record.getHashedKey(),
+                    segmentWriters.get(partition).append(record.getHashedKey(), record.getHexedValue(), ++lastSequenceNumber));
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static final class Record {
+        private final String hashedKey;
+        private final String hexedValue;
+    }
+}
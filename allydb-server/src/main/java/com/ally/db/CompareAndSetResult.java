@@ -0,0 +1,17 @@
+package com.ally.db;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of {@link Ally#compareAndSet}. The version is the new version of the key if the value was applied,
+ * otherwise the current version, so the caller can retry without reading the key again.
+ */
+@Getter
+@AllArgsConstructor
+public final class CompareAndSetResult {
+
+    private final boolean applied;
+
+    private final long version;
+}
@@ -0,0 +1,124 @@
+package com.ally.db;
+
+import com.ally.db.compression.DictionaryPolicy;
+import com.ally.db.memory.EvictionPolicy;
+import com.ally.db.memory.MemoryPolicy;
+import com.ally.db.scheduler.FlushPolicy;
+import com.ally.db.storage.SegmentPlacement;
+import lombok.Getter;
+import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Accessors(fluent = true)
+public final class ConfigLoader {
+
+    private static final String ALLY_PROPERTIES = "ally.properties";
+    @Getter
+    private static final int READ_CACHE_SIZE;
+    @Getter
+    private static final int WRITE_BUFFER_SIZE;
+    @Getter
+    private static final int EDIT_BUFFER_SIZE;
+    @Getter
+    private static final long STORAGE_FILE_RECOMMENDED_SIZE;
+    @Getter
+    private static final int GRPC_PORT;
+    @Getter
+    private static final List<String> DB_DIRECTORIES;
+    @Getter
+    private static final SegmentPlacement SEGMENT_PLACEMENT;
+    @Getter
+    private static final int PARTITIONS;
+    @Getter
+    private static final int IO_THREADS;
+    @Getter
+    private static final FlushPolicy FLUSH_POLICY;
+    @Getter
+    private static final DictionaryPolicy DICTIONARY_POLICY;
+    @Getter
+    private static final EngineMode ENGINE_MODE;
+    @Getter
+    private static final MemoryPolicy MEMORY_POLICY;
+    @Getter
+    private static final long BULK_SEGMENT_SIZE;
+    @Getter
+    private static final int WATCH_HISTORY_SIZE;
+    @Getter
+    private static final int WATCH_SUBSCRIBER_BUFFER_SIZE;
+
+    static {
+        Properties properties = loadProperties();
+
+        READ_CACHE_SIZE = Integer.parseInt(properties.getProperty("read_cache_size"));
+        WRITE_BUFFER_SIZE = Integer.parseInt(properties.getProperty("write_buffer_size"));
+        EDIT_BUFFER_SIZE = Integer.parseInt(properties.getProperty("edit_buffer_size"));
+        STORAGE_FILE_RECOMMENDED_SIZE = Long.parseLong(properties.getProperty("storage_file_recommended_size"));
+        GRPC_PORT = Integer.parseInt(properties.getProperty("grpc_port"));
+        DB_DIRECTORIES = Arrays.stream(properties.getProperty("db_directories").split(","))
+                .map(String::trim)
+                .filter(directory -> !directory.isEmpty())
+                .collect(Collectors.toList());
+        SEGMENT_PLACEMENT = SegmentPlacement.valueOf(properties.getProperty("segment_placement").trim().toUpperCase(Locale.ROOT));
+        PARTITIONS = Integer.parseInt(properties.getProperty("partitions").trim());
+        IO_THREADS = Integer.parseInt(properties.getProperty("io_threads").trim());
+        FLUSH_POLICY = FlushPolicy.builder()
+                .tickMillis(Long.parseLong(properties.getProperty("scheduler_tick_millis").trim()))
+                .flushBufferBytes(Long.parseLong(properties.getProperty("flush_buffer_bytes").trim()))
+                .flushMinDelayMillis(Long.parseLong(properties.getProperty("flush_min_delay_millis").trim()))
+                .flushMaxDelayMillis(Long.parseLong(properties.getProperty("flush_max_delay_millis").trim()))
+                .indexMinDelayMillis(Long.parseLong(properties.getProperty("index_min_delay_millis").trim()))
+                .indexMaxDelayMillis(Long.parseLong(properties.getProperty("index_max_delay_millis").trim()))
+                .gcGarbageRatio(Double.parseDouble(properties.getProperty("gc_garbage_ratio").trim()))
+                .gcUrgentGarbageRatio(Double.parseDouble(properties.getProperty("gc_urgent_garbage_ratio").trim()))
+                .busyWritesPerSecond(Double.parseDouble(properties.getProperty("busy_writes_per_second").trim()))
+                .idleWritesPerSecond(Double.parseDouble(properties.getProperty("idle_writes_per_second").trim()))
+                .latencyTargetMicros(Long.parseLong(properties.getProperty("latency_target_micros").trim()))
+                .build();
+        DICTIONARY_POLICY = DictionaryPolicy.builder()
+                .dictionarySize(Integer.parseInt(properties.getProperty("dictionary_size").trim()))
+                .sampleCount(Integer.parseInt(properties.getProperty("dictionary_sample_count").trim()))
+                .minSampleCount(Integer.parseInt(properties.getProperty("dictionary_min_sample_count").trim()))
+                .maxValueSize(Integer.parseInt(properties.getProperty("dictionary_max_value_size").trim()))
+                .minImprovement(Double.parseDouble(properties.getProperty("dictionary_min_improvement").trim()))
+                .maxDictionaries(Integer.parseInt(properties.getProperty("dictionary_max_count").trim()))
+                .build();
+        ENGINE_MODE = EngineMode.valueOf(properties.getProperty("engine").trim().toUpperCase(Locale.ROOT));
+        MEMORY_POLICY = MemoryPolicy.builder()
+                .maxBytes(Long.parseLong(properties.getProperty("memory_max_bytes").trim()))
+                .slabSize(Integer.parseInt(properties.getProperty("memory_slab_size").trim()))
+                .evictionPolicy(EvictionPolicy.valueOf(properties.getProperty("memory_eviction").trim().toUpperCase(Locale.ROOT)))
+                .snapshotIntervalSeconds(Long.parseLong(properties.getProperty("memory_snapshot_interval_seconds").trim()))
+                .build();
+        BULK_SEGMENT_SIZE = Long.parseLong(properties.getProperty("bulk_segment_size").trim());
+        WATCH_HISTORY_SIZE = Integer.parseInt(properties.getProperty("watch_history_size").trim());
+        WATCH_SUBSCRIBER_BUFFER_SIZE = Integer.parseInt(properties.getProperty("watch_subscriber_buffer_size").trim());
+    }
+
+    private ConfigLoader() {
+
+    }
+
+    private static Properties loadProperties() {
+        String resourceName = ALLY_PROPERTIES;
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+
+        Properties properties = new Properties();
+
+        try(InputStream resourceStream = loader.getResourceAsStream(resourceName)) {
+            properties.load(resourceStream);
+        } catch (IOException e) {
+            log.error("Failed to load properties", e);
+            System.exit(-1);
+        }
+        return properties;
+    }
+}
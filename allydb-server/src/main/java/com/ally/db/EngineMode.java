@@ -0,0 +1,13 @@
+package com.ally.db;
+
+/**
+ * Where partitions keep their values.
+ */
+public enum EngineMode {
+
+    //storage files on disk, with buffers and a read cache in memory
+    DISK,
+
+    //compressed values in off-heap slabs only, with an optional snapshot for warm restarts
+    MEMORY
+}
@@ -1,5 +1,6 @@
 package com.ally.db;
 
+import com.ally.db.feed.ChangeFeed;
 import com.ally.db.proto.impl.AllyServiceImpl;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
@@ -13,12 +14,16 @@ public final class Main {
 
     public static void main(String[] args) {
 
-        Ally ally = new Ally(ConfigLoader.READ_CACHE_SIZE(), ConfigLoader.WRITE_BUFFER_SIZE(), ConfigLoader.EDIT_BUFFER_SIZE(), ConfigLoader.STORAGE_FILE_RECOMMENDED_SIZE());
+        AllyShards allyShards = new AllyShards(ConfigLoader.ENGINE_MODE(), ConfigLoader.DB_DIRECTORIES(), ConfigLoader.SEGMENT_PLACEMENT(), ConfigLoader.FLUSH_POLICY(),
+                ConfigLoader.DICTIONARY_POLICY(), ConfigLoader.MEMORY_POLICY(),
+                new ChangeFeed(ConfigLoader.WATCH_HISTORY_SIZE(), ConfigLoader.WATCH_SUBSCRIBER_BUFFER_SIZE()),
+                ConfigLoader.PARTITIONS(), ConfigLoader.IO_THREADS(),
+                ConfigLoader.READ_CACHE_SIZE(), ConfigLoader.WRITE_BUFFER_SIZE(), ConfigLoader.EDIT_BUFFER_SIZE(), ConfigLoader.STORAGE_FILE_RECOMMENDED_SIZE());
 
         Server server = ServerBuilder
                 .forPort(ConfigLoader.GRPC_PORT())
                 .addService(ProtoReflectionService.newInstance())
-                .addService(new AllyServiceImpl(ally)).build();
+                .addService(new AllyServiceImpl(allyShards)).build();
 
         try {
             server.start();
@@ -0,0 +1,350 @@
+package com.ally.db;
+
+import com.ally.db.feed.ChangeEvent;
+import com.ally.db.feed.ChangeFeed;
+import com.ally.db.feed.ChangeType;
+import com.ally.db.index.VersionedValue;
+import com.ally.db.memory.MemoryPolicy;
+import com.ally.db.memory.SlabStore;
+import com.ally.db.memory.SnapshotFile;
+import com.ally.db.util.CompressionUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+
+/**
+ * Partition of the in-memory engine. Values are compressed and kept in off-heap slabs only,
+ * when the memory is full the least recently or least frequently used values are evicted.
+ * Optionally all values are periodically written to a single snapshot file, which is loaded on start.
+ */
+@Slf4j
+final class MemoryAlly extends Partition {
+
+    //must not start with 's', which would make it a storage file for the disk engine
+    private static final String SNAPSHOT_FILE_NAME = "memory_snapshot.abby";
+    private static final IntFunction<byte[]> NO_DICTIONARIES = dictionaryId -> null;
+    private static final int SNAPSHOT_BATCH_SIZE = 1024;
+
+    private final Object lock = new Object();
+    private final SlabStore slabStore;
+    private final SnapshotFile snapshotFile;
+    private final ChangeFeed changeFeed;
+
+    //values evicted by the current put, published as deletes once it is done
+    private final List<String> evictedHashes = new ArrayList<>();
+
+    private long lastSequenceNumber;
+
+    MemoryAlly(String dbDirectoryPath, MemoryPolicy memoryPolicy, long maxBytes, ChangeFeed changeFeed) {
+
+        synchronized (lock) {
+
+            this.changeFeed = changeFeed;
+
+            slabStore = new SlabStore(maxBytes, memoryPolicy.getSlabSize(), memoryPolicy.getEvictionPolicy(), evictedHashes::add);
+
+            //sequence numbers start from the wall clock in microseconds, so they keep growing across restarts
+            lastSequenceNumber = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+
+            if (memoryPolicy.getSnapshotIntervalSeconds() > 0) {
+
+                File directory = new File(dbDirectoryPath);
+                if (!directory.exists()) {
+                    directory.mkdirs();
+                }
+
+                snapshotFile = new SnapshotFile(new File(directory, SNAPSHOT_FILE_NAME));
+
+                loadSnapshot();
+
+                ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+                scheduledExecutorService.scheduleWithFixedDelay(this::writeSnapshot,
+                        memoryPolicy.getSnapshotIntervalSeconds(), memoryPolicy.getSnapshotIntervalSeconds(), TimeUnit.SECONDS);
+
+            } else {
+                snapshotFile = null;
+            }
+        }
+    }
+
+    @Override
+    boolean putHashed(String hashedKey, byte[] value) {
+
+        if (value == null || value.length == 0) {
+            log.warn("Value must be not null or empty");
+            return false;
+        }
+
+        return putElement(hashedKey, compressValue(value)) != 0;
+    }
+
+    @Override
+    byte[] getHashed(String hashedKey) {
+
+        byte[] compressedValue;
+
+        synchronized (lock) {
+            compressedValue = slabStore.get(hashedKey);
+        }
+
+        if (compressedValue == null) {
+            log.info("No value found for hashed key: {}", hashedKey);
+            return new byte[0];
+        }
+
+        byte[] decompressedValue = new byte[0];
+
+        try {
+            decompressedValue = CompressionUtil.decompress(compressedValue);
+        } catch (DataFormatException | IOException e) {
+            log.error("Failed to decompress data", e);
+            System.exit(-1);
+        }
+
+        return decompressedValue;
+    }
+
+    /**
+     * There is no disk I/O to wait for, so the operation completes on the calling thread.
+     */
+    @Override
+    CompletableFuture<Boolean> putHashedAsync(String hashedKey, byte[] value) {
+        return CompletableFuture.completedFuture(putHashed(hashedKey, value));
+    }
+
+    @Override
+    CompletableFuture<byte[]> getHashedAsync(String hashedKey) {
+        return CompletableFuture.completedFuture(getHashed(hashedKey));
+    }
+
+    @Override
+    void deleteHashed(String hashedKey) {
+        synchronized (lock) {
+            deleteElement(hashedKey);
+        }
+    }
+
+    @Override
+    long getVersionHashed(String hashedKey) {
+        synchronized (lock) {
+            return slabStore.sequenceNumber(hashedKey);
+        }
+    }
+
+    @Override
+    CompareAndSetResult compareAndSetHashed(String hashedKey, long expectedVersion, byte[] value) {
+
+        //compress before taking the lock
+        byte[] compressedValue = value == null || value.length == 0 ? null : compressValue(value);
+
+        synchronized (lock) {
+
+            long currentVersion = slabStore.sequenceNumber(hashedKey);
+
+            if (currentVersion != expectedVersion) {
+                return new CompareAndSetResult(false, currentVersion);
+            }
+
+            if (compressedValue == null) {
+                deleteElement(hashedKey);
+                return new CompareAndSetResult(true, 0);
+            }
+
+            long sequenceNumber = putElement(hashedKey, compressedValue);
+
+            //a value which does not fit leaves the current one in place
+            return sequenceNumber != 0
+                    ? new CompareAndSetResult(true, sequenceNumber)
+                    : new CompareAndSetResult(false, currentVersion);
+        }
+    }
+
+    @Override
+    List<WriteBatch.Operation> compressOperations(List<WriteBatch.Operation> operations) {
+        return operations.stream()
+                .map(operation -> operation.isDelete()
+                        ? operation
+                        : new WriteBatch.Operation(operation.getHashedKey(), compressValue(operation.getValue())))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    boolean fits(List<WriteBatch.Operation> compressedOperations) {
+        return compressedOperations.stream()
+                .allMatch(operation -> operation.isDelete() || slabStore.fits(operation.getValue().length));
+    }
+
+    @Override
+    void applyOperations(List<WriteBatch.Operation> compressedOperations) {
+        compressedOperations.forEach(operation -> {
+            if (operation.isDelete()) {
+                deleteElement(operation.getHashedKey());
+            } else {
+                putElement(operation.getHashedKey(), operation.getValue());
+            }
+        });
+    }
+
+    @Override
+    Object getLock() {
+        return lock;
+    }
+
+    @Override
+    Adoption prepareAdoption(String bulkDirectoryPath) {
+        log.error("Bulk load output can be adopted only by the disk engine");
+        return null;
+    }
+
+    /**
+     * @return the sequence number of the write, 0 if the value does not fit and the previous one was kept
+     */
+    private long putElement(String hash, byte[] value) {
+
+        synchronized (lock) {
+
+            boolean existed = slabStore.sequenceNumber(hash) != 0;
+
+            long sequenceNumber = ++lastSequenceNumber;
+
+            boolean stored = slabStore.put(hash, value, sequenceNumber);
+
+            //the previous value of the key itself may have been evicted to make room, the put supersedes that
+            if (stored) {
+                evictedHashes.remove(hash);
+            }
+
+            publishEvictions();
+
+            if (!stored) {
+                log.warn("No room for a value of {} bytes", value.length);
+                return 0;
+            }
+
+            //there is no flush, so writes are published right away, in order under the lock
+            publish(new ChangeEvent(existed ? ChangeType.OVERWRITE : ChangeType.PUT, hash, sequenceNumber, value, NO_DICTIONARIES));
+
+            return sequenceNumber;
+        }
+    }
+
+    private void deleteElement(String hash) {
+        synchronized (lock) {
+
+            long sequenceNumber = ++lastSequenceNumber;
+
+            if (slabStore.sequenceNumber(hash) != 0) {
+                slabStore.remove(hash);
+                publish(new ChangeEvent(ChangeType.DELETE, hash, sequenceNumber, null, NO_DICTIONARIES));
+            }
+        }
+    }
+
+    private void publishEvictions() {
+
+        //subscribers, e.g. near-caches, must drop evicted values like deleted ones
+        evictedHashes.forEach(evictedHash -> publish(new ChangeEvent(ChangeType.DELETE, evictedHash, ++lastSequenceNumber, null, NO_DICTIONARIES)));
+
+        evictedHashes.clear();
+    }
+
+    private void publish(ChangeEvent event) {
+        changeFeed.publish(Collections.singletonList(event));
+    }
+
+    private byte[] compressValue(byte[] value) {
+
+        byte[] compressedValue = null;
+
+        try {
+            compressedValue = CompressionUtil.compress(value);
+        } catch (IOException e) {
+            log.error("Failed to compress data", e);
+            System.exit(-1);
+        }
+
+        return compressedValue;
+    }
+
+    private void loadSnapshot() {
+
+        if (!snapshotFile.exists()) {
+            return;
+        }
+
+        try {
+
+            snapshotFile.load((hash, versionedValue) -> {
+                slabStore.put(hash, versionedValue.getValue(), versionedValue.getSequenceNumber());
+                lastSequenceNumber = Math.max(lastSequenceNumber, versionedValue.getSequenceNumber());
+            });
+
+            //nobody subscribed yet
+            evictedHashes.clear();
+
+            log.info("Loaded {} values from snapshot", slabStore.size());
+
+        } catch (IOException e) {
+            //the engine is a cache, so it starts empty rather than not at all
+            log.error("Failed to load snapshot, starting empty", e);
+        }
+    }
+
+    /**
+     * Values are read in batches under the lock and written without it, so operations wait for one batch at most.
+     * The snapshot is not a point in time: values written while it runs may or may not be in it.
+     */
+    private void writeSnapshot() {
+
+        List<String> hashes;
+
+        synchronized (lock) {
+            hashes = slabStore.hashes();
+        }
+
+        try (SnapshotFile.Writer writer = snapshotFile.newWriter()) {
+
+            List<String> batchHashes = new ArrayList<>(SNAPSHOT_BATCH_SIZE);
+            List<VersionedValue> batchValues = new ArrayList<>(SNAPSHOT_BATCH_SIZE);
+
+            for (int from = 0; from < hashes.size(); from += SNAPSHOT_BATCH_SIZE) {
+
+                batchHashes.clear();
+                batchValues.clear();
+
+                synchronized (lock) {
+                    for (String hash : hashes.subList(from, Math.min(hashes.size(), from + SNAPSHOT_BATCH_SIZE))) {
+
+                        //values deleted or evicted since the hashes were taken are skipped
+                        VersionedValue versionedValue = slabStore.peek(hash);
+
+                        if (versionedValue != null) {
+                            batchHashes.add(hash);
+                            batchValues.add(versionedValue);
+                        }
+                    }
+                }
+
+                for (int i = 0; i < batchHashes.size(); i++) {
+                    writer.append(batchHashes.get(i), batchValues.get(i));
+                }
+            }
+
+            writer.commit();
+
+        } catch (IOException e) {
+            log.error("Failed to write snapshot", e);
+        }
+    }
+}
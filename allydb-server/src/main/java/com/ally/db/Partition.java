@@ -0,0 +1,52 @@
+package com.ally.db;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Operations on already hashed keys, which {@link AllyShards} routes to one partition of the storage.
+ */
+abstract class Partition {
+
+    /**
+     * @return false if the value was not stored
+     */
+    abstract boolean putHashed(String hashedKey, byte[] value);
+
+    abstract byte[] getHashed(String hashedKey);
+
+    abstract CompletableFuture<Boolean> putHashedAsync(String hashedKey, byte[] value);
+
+    abstract CompletableFuture<byte[]> getHashedAsync(String hashedKey);
+
+    abstract void deleteHashed(String hashedKey);
+
+    abstract long getVersionHashed(String hashedKey);
+
+    abstract CompareAndSetResult compareAndSetHashed(String hashedKey, long expectedVersion, byte[] value);
+
+    /**
+     * Compresses the values of the operations, before any lock is taken.
+     */
+    abstract List<WriteBatch.Operation> compressOperations(List<WriteBatch.Operation> operations);
+
+    /**
+     * Checks that all values of a batch can be stored, so a batch is applied either fully or not at all.
+     * Caller must hold the lock of this partition, see {@link #getLock()}.
+     */
+    abstract boolean fits(List<WriteBatch.Operation> compressedOperations);
+
+    /**
+     * Caller must hold the lock of this partition, see {@link #getLock()}.
+     */
+    abstract void applyOperations(List<WriteBatch.Operation> compressedOperations);
+
+    abstract Object getLock();
+
+    /**
+     * Checks the output of the {@link BulkLoader} for this partition and moves it into place, see {@link Adoption}.
+     *
+     * @return null if the output can not be adopted, nothing was changed then
+     */
+    abstract Adoption prepareAdoption(String bulkDirectoryPath);
+}
@@ -0,0 +1,82 @@
+package com.ally.db;
+
+import com.ally.db.util.HashUtil;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Puts and deletes which become visible together. Operations are applied in the order they were added,
+ * so a later operation on the same key wins.
+ */
+@Slf4j
+public final class WriteBatch {
+
+    private final List<Operation> operations = new ArrayList<>();
+
+    //a put of an empty value can not be applied, so the whole batch is refused rather than applied without it
+    private boolean rejected;
+
+    public WriteBatch put(byte[] key, byte[] value) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        if (value == null || value.length == 0) {
+            log.warn("Value must be not null or empty, the batch will not be applied");
+            rejected = true;
+            return this;
+        }
+
+        operations.add(new Operation(HashUtil.getSHA256Hash(key), value));
+        return this;
+    }
+
+    public WriteBatch delete(byte[] key) {
+
+        if (key == null || key.length == 0) {
+            log.warn("Key must be not null or empty");
+        }
+
+        operations.add(new Operation(HashUtil.getSHA256Hash(key), null));
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * True if an operation could not be added, the batch is not applied then.
+     */
+    public boolean isRejected() {
+        return rejected;
+    }
+
+    List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    static final class Operation {
+
+        private final String hashedKey;
+
+        //null for a delete
+        private final byte[] value;
+
+        boolean isDelete() {
+            return value == null;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.ally.db.compression;
+
+import com.ally.db.util.CompressionUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.zip.Adler32;
+
+/**
+ * Preset dictionaries for compressing small values of one storage.
+ * <p>
+ * Small values are sampled on put. Every time a new storage file is started, a new dictionary generation
+ * is trained from the samples in the background and used for the values which come after it.
+ * The id of a dictionary is its Adler-32 checksum, which deflate writes into the header of every value
+ * compressed with it, so any value can be decompressed regardless of the generation it was written in.
+ * Dictionaries are kept in the primary directory as {@code d<id>.abby} files.
+ * <p>
+ * A new dictionary is kept only if it compresses the samples clearly better than the current one,
+ * the number of dictionaries is capped and the ones no live value uses are retired by {@link #retain(Set)}.
+ */
+@Slf4j
+public class CompressionDictionaries {
+
+    private static final char DICTIONARY_FILE_PREFIX = 'd';
+    private static final String FILE_EXTENSION = ".abby";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private final DictionaryPolicy dictionaryPolicy;
+    private final File directory;
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private final AtomicBoolean training = new AtomicBoolean();
+    private final Object generationLock = new Object();
+
+    //reservoir of samples, guarded by itself
+    private final List<byte[]> samples = new ArrayList<>();
+    private long seenValues;
+
+    private volatile byte[] currentDictionary;
+    //values compressed just before a new dictionary took over may still be on their way to the index
+    private volatile byte[] previousDictionary;
+
+    public CompressionDictionaries(DictionaryPolicy dictionaryPolicy, File directory) {
+        this.dictionaryPolicy = dictionaryPolicy;
+        this.directory = directory;
+        loadDictionaries();
+    }
+
+    /**
+     * @return the dictionary to compress the value with, or null
+     */
+    public byte[] dictionaryFor(byte[] value) {
+
+        if (dictionaryPolicy.getDictionarySize() == 0 || value.length > dictionaryPolicy.getMaxValueSize()) {
+            return null;
+        }
+
+        sample(value);
+
+        return currentDictionary;
+    }
+
+    public byte[] get(int dictionaryId) {
+        return dictionaries.get(dictionaryId);
+    }
+
+    /**
+     * Starts training a dictionary for the next generation, if there are enough new samples.
+     *
+     * @return completes when the training is over
+     */
+    public CompletableFuture<Void> newGeneration() {
+
+        List<byte[]> trainingSamples;
+
+        synchronized (samples) {
+
+            if (samples.size() < dictionaryPolicy.getMinSampleCount() || !training.compareAndSet(false, true)) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (dictionaries.size() >= dictionaryPolicy.getMaxDictionaries()) {
+                training.set(false);
+                log.info("{} compression dictionaries are in use, no new one is trained", dictionaries.size());
+                return CompletableFuture.completedFuture(null);
+            }
+
+            trainingSamples = new ArrayList<>(samples);
+            samples.clear();
+            seenValues = 0;
+        }
+
+        return CompletableFuture.runAsync(() -> train(trainingSamples))
+                .whenComplete((result, e) -> {
+                    training.set(false);
+                    if (e != null) {
+                        log.error("Failed to train a compression dictionary", e);
+                    }
+                });
+    }
+
+    private void sample(byte[] value) {
+        synchronized (samples) {
+
+            seenValues++;
+
+            //reservoir sampling keeps a uniform sample of all values seen since the last training
+            if (samples.size() < dictionaryPolicy.getSampleCount()) {
+                samples.add(value);
+            } else {
+                long position = ThreadLocalRandom.current().nextLong(seenValues);
+                if (position < samples.size()) {
+                    samples.set((int) position, value);
+                }
+            }
+        }
+    }
+
+    private void train(List<byte[]> trainingSamples) {
+
+        byte[] dictionary = DictionaryTrainer.train(trainingSamples, dictionaryPolicy.getDictionarySize());
+
+        if (dictionary == null) {
+            log.info("Samples have too little in common for a compression dictionary");
+            return;
+        }
+
+        long oldSize = compressedSize(trainingSamples, currentDictionary);
+        long newSize = compressedSize(trainingSamples, dictionary);
+
+        if (newSize > oldSize * (1 - dictionaryPolicy.getMinImprovement())) {
+            log.info("New compression dictionary shrinks samples to {} bytes instead of {}, which is not enough to keep it", newSize, oldSize);
+            return;
+        }
+
+        int dictionaryId = dictionaryId(dictionary);
+
+        //retiring must not see the new dictionary registered, but not yet current
+        synchronized (generationLock) {
+
+            //0 is the id of values without a dictionary, and a colliding id would make values of the older dictionary unreadable
+            if (dictionaryId == 0 || dictionaries.containsKey(dictionaryId)) {
+                log.warn("Id {} of the new compression dictionary is already taken, the dictionary is dropped", Integer.toHexString(dictionaryId));
+                return;
+            }
+
+            try {
+                Path dictionaryPath = new File(directory, dictionaryFileName(dictionaryId)).toPath();
+                Path tempPath = new File(directory, dictionaryFileName(dictionaryId) + TEMP_FILE_EXTENSION).toPath();
+
+                //the dictionary must be on disk before any value compressed with it
+                Files.write(tempPath, dictionary);
+                Files.move(tempPath, dictionaryPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            } catch (IOException e) {
+                log.error("Failed to write compression dictionary", e);
+                return;
+            }
+
+            dictionaries.put(dictionaryId, dictionary);
+            previousDictionary = currentDictionary;
+            currentDictionary = dictionary;
+        }
+
+        log.info("Trained compression dictionary {} of {} bytes from {} samples", Integer.toHexString(dictionaryId), dictionary.length, trainingSamples.size());
+    }
+
+    /**
+     * Deletes the dictionaries no live value is compressed with. The current and the previous dictionary are always kept,
+     * values compressed with them may not be in the index yet. The caller holds the lock of the storage,
+     * so the set of live values does not change meanwhile.
+     *
+     * @param liveDictionaryIds ids of the dictionaries of all values in the storage
+     */
+    public void retain(Set<Integer> liveDictionaryIds) {
+
+        synchronized (generationLock) {
+
+            List<Integer> unusedDictionaryIds = dictionaries.entrySet().stream()
+                    .filter(entry -> !liveDictionaryIds.contains(entry.getKey()))
+                    .filter(entry -> entry.getValue() != currentDictionary && entry.getValue() != previousDictionary)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList());
+
+            for (Integer dictionaryId : unusedDictionaryIds) {
+                try {
+                    Files.deleteIfExists(new File(directory, dictionaryFileName(dictionaryId)).toPath());
+                    dictionaries.remove(dictionaryId);
+                } catch (IOException e) {
+                    log.error("Failed to delete compression dictionary {}", Integer.toHexString(dictionaryId), e);
+                }
+            }
+
+            if (!unusedDictionaryIds.isEmpty()) {
+                log.info("Retired {} unused compression dictionaries", unusedDictionaryIds.size());
+            }
+        }
+    }
+
+    private static long compressedSize(List<byte[]> values, byte[] dictionary) {
+
+        long size = 0;
+
+        for (byte[] value : values) {
+            try {
+                size += CompressionUtil.compress(value, dictionary).length;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        return size;
+    }
+
+    private void loadDictionaries() {
+
+        File[] dictionaryFiles = directory.listFiles((dir, name) -> name.charAt(0) == DICTIONARY_FILE_PREFIX && name.endsWith(FILE_EXTENSION));
+
+        if (dictionaryFiles == null || dictionaryFiles.length == 0) {
+            return;
+        }
+
+        Arrays.sort(dictionaryFiles, Comparator.comparingLong(File::lastModified));
+
+        for (File dictionaryFile : dictionaryFiles) {
+            try {
+                byte[] dictionary = Files.readAllBytes(dictionaryFile.toPath());
+                dictionaries.put(dictionaryId(dictionary), dictionary);
+                previousDictionary = currentDictionary;
+                currentDictionary = dictionary;
+            } catch (IOException e) {
+                log.error("Failed to load compression dictionary", e);
+                System.exit(-1);
+            }
+        }
+
+        log.info("Loaded {} compression dictionaries", dictionaries.size());
+    }
+
+    private static int dictionaryId(byte[] dictionary) {
+        Adler32 adler32 = new Adler32();
+        adler32.update(dictionary, 0, dictionary.length);
+        return (int) adler32.getValue();
+    }
+
+    private static String dictionaryFileName(int dictionaryId) {
+        return DICTIONARY_FILE_PREFIX + String.format("%08x", dictionaryId) + FILE_EXTENSION;
+    }
+}
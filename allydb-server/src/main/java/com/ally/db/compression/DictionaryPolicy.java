@@ -0,0 +1,37 @@
+package com.ally.db.compression;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Knobs of the trained compression dictionaries, see {@link CompressionDictionaries}.
+ */
+@Getter
+@Builder
+public final class DictionaryPolicy {
+
+    //0 turns the dictionaries off, deflate can not use more than 32 KB of it
+    //setting the dictionary costs time for every value, a few KB already cover small similar values
+    @Builder.Default
+    private final int dictionarySize = 4 * 1024;
+
+    //values kept as training samples for the next dictionary
+    @Builder.Default
+    private final int sampleCount = 512;
+
+    //fewer samples are not worth a new dictionary
+    @Builder.Default
+    private final int minSampleCount = 64;
+
+    //only values up to this size are sampled and compressed with a dictionary
+    @Builder.Default
+    private final int maxValueSize = 2048;
+
+    //a new dictionary must shrink the samples by this fraction compared to the current one, otherwise it is not kept
+    @Builder.Default
+    private final double minImprovement = 0.05;
+
+    //no new dictionary is trained while this many are in use, unused ones are retired by the garbage collection
+    @Builder.Default
+    private final int maxDictionaries = 16;
+}
@@ -0,0 +1,150 @@
+package com.ally.db.compression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Builds a preset dictionary from sample values, in the spirit of the COVER algorithm of zstd.
+ * <p>
+ * Samples are cut into segments, a segment scores the number of samples sharing each of its d-mers,
+ * and the best segments are picked greedily. D-mers of a picked segment stop counting for the others,
+ * so the dictionary does not repeat itself.
+ */
+final class DictionaryTrainer {
+
+    private static final int DMER_LENGTH = 8;
+    private static final int SEGMENT_LENGTH = 64;
+
+    private DictionaryTrainer() {
+
+    }
+
+    /**
+     * @return the dictionary, or null if the samples have nothing in common
+     */
+    static byte[] train(List<byte[]> samples, int dictionarySize) {
+
+        Map<Long, Integer> frequencies = countDmers(samples);
+
+        //scores only go down as segments are picked, so a segment is rescored only when it reaches the top
+        PriorityQueue<Segment> candidates = new PriorityQueue<>((first, second) -> Integer.compare(second.score, first.score));
+
+        for (byte[] sample : samples) {
+            for (int start = 0; start + DMER_LENGTH <= sample.length; start += SEGMENT_LENGTH) {
+                Segment segment = new Segment(sample, start, Math.min(sample.length, start + SEGMENT_LENGTH));
+                segment.score = score(segment, frequencies);
+                candidates.add(segment);
+            }
+        }
+
+        List<Segment> picked = new ArrayList<>();
+        int size = 0;
+
+        while (size < dictionarySize && !candidates.isEmpty()) {
+
+            Segment segment = candidates.poll();
+            int score = score(segment, frequencies);
+
+            if (!candidates.isEmpty() && score < candidates.peek().score) {
+                segment.score = score;
+                candidates.add(segment);
+                continue;
+            }
+
+            //a d-mer seen in a single sample does not help other values
+            if (score <= 1) {
+                break;
+            }
+
+            picked.add(segment);
+            size += segment.end - segment.start;
+
+            forEachDmer(segment, frequencies::remove);
+        }
+
+        if (picked.isEmpty()) {
+            return null;
+        }
+
+        //deflate reaches the end of the dictionary with the shortest distances, so the best segments go last
+        byte[] dictionary = new byte[Math.min(size, dictionarySize)];
+        int position = dictionary.length;
+
+        for (Segment segment : picked) {
+            int length = Math.min(segment.end - segment.start, position);
+            position -= length;
+            System.arraycopy(segment.sample, segment.start, dictionary, position, length);
+            if (position == 0) {
+                break;
+            }
+        }
+
+        return Arrays.copyOfRange(dictionary, position, dictionary.length);
+    }
+
+    private static Map<Long, Integer> countDmers(List<byte[]> samples) {
+
+        Map<Long, Integer> frequencies = new HashMap<>();
+
+        for (byte[] sample : samples) {
+
+            //every sample counts once per d-mer
+            Set<Long> dmers = new HashSet<>();
+
+            for (int i = 0; i + DMER_LENGTH <= sample.length; i++) {
+                dmers.add(dmer(sample, i));
+            }
+
+            dmers.forEach(dmer -> frequencies.merge(dmer, 1, Integer::sum));
+        }
+
+        return frequencies;
+    }
+
+    private static int score(Segment segment, Map<Long, Integer> frequencies) {
+
+        Set<Long> dmers = new HashSet<>();
+        forEachDmer(segment, dmers::add);
+
+        int score = 0;
+        for (Long dmer : dmers) {
+            score += frequencies.getOrDefault(dmer, 0);
+        }
+        return score;
+    }
+
+    private static void forEachDmer(Segment segment, Consumer<Long> consumer) {
+        for (int i = segment.start; i + DMER_LENGTH <= segment.end; i++) {
+            consumer.accept(dmer(segment.sample, i));
+        }
+    }
+
+    private static long dmer(byte[] data, int offset) {
+        long dmer = 0;
+        for (int i = 0; i < DMER_LENGTH; i++) {
+            dmer = (dmer << 8) | (data[offset + i] & 0xFF);
+        }
+        return dmer;
+    }
+
+    private static final class Segment {
+
+        private final byte[] sample;
+        private final int start;
+        private final int end;
+        private int score;
+
+        private Segment(byte[] sample, int start, int end) {
+            this.sample = sample;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
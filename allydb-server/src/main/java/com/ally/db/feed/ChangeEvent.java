@@ -0,0 +1,58 @@
+package com.ally.db.feed;
+
+import com.ally.db.util.CompressionUtil;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.function.IntFunction;
+import java.util.zip.DataFormatException;
+
+/**
+ * Committed write of one key. The value is kept compressed and is decompressed only for subscribers which want it.
+ */
+@Getter
+public final class ChangeEvent {
+
+    //position in the change feed, assigned when the event is published
+    private long sequenceNumber;
+
+    private final ChangeType type;
+
+    //null for resets
+    private final String hashedKey;
+
+    //sequence number of the write in its partition, which is the version of the key
+    private final long version;
+
+    //null for deletes
+    private final byte[] compressedValue;
+
+    //dictionary the value was compressed with, null if none, looked up right away
+    //because the storage may retire it while the event is still retained in the feed
+    @Getter(AccessLevel.NONE)
+    private final byte[] dictionary;
+
+    public ChangeEvent(ChangeType type, String hashedKey, long version, byte[] compressedValue, IntFunction<byte[]> dictionaries) {
+        this.type = type;
+        this.hashedKey = hashedKey;
+        this.version = version;
+        this.compressedValue = compressedValue;
+
+        int dictionaryId = compressedValue == null ? 0 : CompressionUtil.dictionaryId(compressedValue);
+        this.dictionary = dictionaryId == 0 ? null : dictionaries.apply(dictionaryId);
+    }
+
+    public byte[] decompressValue() throws DataFormatException, IOException {
+
+        if (compressedValue == null) {
+            return new byte[0];
+        }
+
+        return CompressionUtil.decompress(compressedValue, dictionaryId -> dictionary);
+    }
+
+    void setSequenceNumber(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+}
@@ -0,0 +1,137 @@
+package com.ally.db.feed;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Committed writes of all partitions in one sequence. Every event gets the next sequence number of the feed,
+ * the latest events are retained, so subscribers can resume from a sequence number they have already seen.
+ * <p>
+ * Partitions publish while holding their own locks, so publishing only appends to a lock-free queue.
+ * One dispatcher thread numbers the events, retains them and hands them to the subscribers.
+ */
+@Slf4j
+public class ChangeFeed {
+
+    private static final int DISPATCH_BATCH_SIZE = 1024;
+
+    private final ChangeEvent[] history;
+    private final int subscriberBufferSize;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final Queue<ChangeEvent> publishedEvents = new ConcurrentLinkedQueue<>();
+    private final Thread dispatcher;
+
+    private final long firstSequenceNumber;
+    private long lastSequenceNumber;
+
+    public ChangeFeed(int historySize, int subscriberBufferSize) {
+
+        if (subscriberBufferSize < 1) {
+            log.error("Subscriber buffer size must be positive");
+            System.exit(-1);
+        }
+
+        this.history = new ChangeEvent[Math.max(0, historySize)];
+        this.subscriberBufferSize = subscriberBufferSize;
+
+        //sequence numbers start from the wall clock in microseconds, so they keep growing across restarts
+        this.lastSequenceNumber = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        this.firstSequenceNumber = lastSequenceNumber + 1;
+
+        dispatcher = new Thread(this::dispatch, "change-feed");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Caller publishes the events of one partition in the order of their versions.
+     * Returns right away, the events get their sequence numbers and reach the subscribers shortly after.
+     */
+    public void publish(List<ChangeEvent> events) {
+
+        if (events.isEmpty()) {
+            return;
+        }
+
+        publishedEvents.addAll(events);
+        LockSupport.unpark(dispatcher);
+    }
+
+    private void dispatch() {
+
+        while (true) {
+
+            if (publishedEvents.isEmpty()) {
+                //a publish after the check leaves a permit, so this returns right away
+                LockSupport.park(this);
+                continue;
+            }
+
+            synchronized (this) {
+
+                ChangeEvent event;
+                int dispatchedEvents = 0;
+
+                //subscribe waits for the lock, so it is released after a batch
+                while (dispatchedEvents++ < DISPATCH_BATCH_SIZE && (event = publishedEvents.poll()) != null) {
+                    dispatch(event);
+                }
+            }
+        }
+    }
+
+    private void dispatch(ChangeEvent event) {
+
+        event.setSequenceNumber(++lastSequenceNumber);
+
+        if (history.length != 0) {
+            history[(int) (lastSequenceNumber % history.length)] = event;
+        }
+
+        for (Subscription subscription : subscriptions) {
+            if (!subscription.offer(event)) {
+                subscriptions.remove(subscription);
+                log.warn("Subscriber fell behind by more than {} events and was dropped", subscriberBufferSize);
+            }
+        }
+    }
+
+    /**
+     * Subscribes to new events, or to retained events starting from the given sequence number and all later ones.
+     * Returns nothing if the events from that sequence number are not retained anymore.
+     */
+    public synchronized Optional<Subscription> subscribe(long fromSequenceNumber) {
+
+        long firstRetainedSequenceNumber = Math.max(firstSequenceNumber, lastSequenceNumber - history.length + 1);
+
+        if (fromSequenceNumber != 0 && fromSequenceNumber <= lastSequenceNumber && fromSequenceNumber < firstRetainedSequenceNumber) {
+            return Optional.empty();
+        }
+
+        long replayFrom = fromSequenceNumber == 0 ? lastSequenceNumber + 1 : Math.max(fromSequenceNumber, firstRetainedSequenceNumber);
+        int replayedEvents = (int) Math.max(0, lastSequenceNumber - replayFrom + 1);
+
+        //room for the replayed events on top of the regular buffer
+        Subscription subscription = new Subscription(subscriberBufferSize + replayedEvents, this, lastSequenceNumber);
+
+        for (long sequenceNumber = replayFrom; sequenceNumber <= lastSequenceNumber; sequenceNumber++) {
+            subscription.offer(history[(int) (sequenceNumber % history.length)]);
+        }
+
+        subscriptions.add(subscription);
+
+        return Optional.of(subscription);
+    }
+
+    void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+    }
+}
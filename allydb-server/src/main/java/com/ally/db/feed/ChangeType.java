@@ -0,0 +1,16 @@
+package com.ally.db.feed;
+
+public enum ChangeType {
+
+    //a key which did not exist
+    PUT,
+
+    //a new value of an existing key
+    OVERWRITE,
+
+    //a deleted or evicted key
+    DELETE,
+
+    //all values were replaced at once, e.g. by adopting the output of the bulk loader, the event has no key
+    RESET
+}
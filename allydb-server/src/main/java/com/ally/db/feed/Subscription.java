@@ -0,0 +1,54 @@
+package com.ally.db.feed;
+
+import lombok.Getter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events of the change feed for one subscriber, kept in a bounded ring buffer.
+ * A subscriber which falls behind by more than the buffer is dropped from the feed,
+ * it can drain what was buffered and resume from the next sequence number.
+ */
+public class Subscription {
+
+    private final BlockingQueue<ChangeEvent> ringBuffer;
+    private final ChangeFeed changeFeed;
+
+    //sequence number of the last event in the feed when subscribing, every later event comes through this subscription
+    @Getter
+    private final long position;
+
+    @Getter
+    private volatile boolean overflowed;
+
+    Subscription(int capacity, ChangeFeed changeFeed, long position) {
+        this.ringBuffer = new ArrayBlockingQueue<>(capacity);
+        this.changeFeed = changeFeed;
+        this.position = position;
+    }
+
+    /**
+     * Next event, or null if there is none within the timeout.
+     */
+    public ChangeEvent poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return ringBuffer.poll(timeout, unit);
+    }
+
+    public void close() {
+        changeFeed.unsubscribe(this);
+    }
+
+    /**
+     * Returns false if the buffer is full, the subscription then receives no more events.
+     */
+    boolean offer(ChangeEvent event) {
+
+        if (!ringBuffer.offer(event)) {
+            overflowed = true;
+        }
+
+        return !overflowed;
+    }
+}
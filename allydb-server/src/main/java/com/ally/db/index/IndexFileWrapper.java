@@ -0,0 +1,126 @@
+package com.ally.db.index;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Slf4j
+public class IndexFileWrapper {
+    private static final String INDEX_NAME = "index";
+    private static final String FILE_EXTENSION = ".abby";
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final long LEGACY_SEQUENCE_NUMBER = 1;
+    private final File index;
+    private final String defaultStorageDirectoryPath;
+
+    public IndexFileWrapper(String dbDirectoryPath) {
+        index = new File(dbDirectoryPath + File.separator + INDEX_NAME + FILE_EXTENSION);
+        defaultStorageDirectoryPath = dbDirectoryPath;
+    }
+
+    public boolean exists() {
+        return index.exists() || index.length() != 0;
+    }
+
+    public void createIndex() {
+        try {
+            boolean newIndexCreated = index.createNewFile();
+            if (!newIndexCreated) {
+                log.error("Index file already exists");
+                System.exit(-1);
+            }
+        } catch (IOException e) {
+            log.error("Cannot create index file", e);
+            System.exit(-1);
+        }
+    }
+
+    public void deleteIndex() {
+        boolean indexWasDeleted = index.delete();
+        if (!indexWasDeleted) {
+            log.error("Cannot delete old index");
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * @return false if the index could not be deleted, the caller decides whether that matters
+     */
+    public boolean tryDeleteIndex() {
+        return index.delete() || !index.exists();
+    }
+
+    public Map<String, ValuePointer> loadIndex() {
+
+        Map<String, ValuePointer> inMemoryIndex = null;
+        try {
+            inMemoryIndex = Files.readAllLines(Paths.get(index.getPath()), StandardCharsets.UTF_8).stream()
+                    .map(element -> element.split("\\|"))
+                    .collect(Collectors.toMap(elementArray -> elementArray[0], this::toValuePointer));
+        } catch (IOException e) {
+            log.error("Failed to load index", e);
+            System.exit(-1);
+        }
+
+        return inMemoryIndex;
+
+    }
+
+    /**
+     * Rewrites the whole index in one sequential pass. The caller keeps track of changes,
+     * so the index is not read back and compared before writing.
+     * The index is written to a temporary file and moved over the old one, so a crash never leaves half an index.
+     */
+    public void writeIndexOnDisk(Map<String, ValuePointer> inMemoryIndex) {
+
+        File tempIndex = new File(index.getPath() + TEMP_FILE_EXTENSION);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(tempIndex.getPath()), StandardCharsets.UTF_8)) {
+
+            for (Map.Entry<String, ValuePointer> entry : inMemoryIndex.entrySet()) {
+                ValuePointer value = entry.getValue();
+                writer.write(entry.getKey() + '|' + value.getFilename() + '|' + value.getLineNumber() + '|' + value.getDirectory() + '|' + value.getSequenceNumber()
+                        + '|' + value.getDictionaryId());
+                writer.write(System.lineSeparator());
+            }
+
+        } catch (IOException e) {
+            log.error("Failed to write index on disk", e);
+            System.exit(-1);
+        }
+
+        try {
+            Files.move(tempIndex.toPath(), index.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.error("Failed to replace index on disk", e);
+            System.exit(-1);
+        }
+
+        log.info("Index was written on disk");
+
+    }
+
+    private ValuePointer toValuePointer(String[] elementArray) {
+
+        //index files written before multiple data directories have no directory column
+        //directory names repeat on every line, so they are interned to keep one copy per directory
+        String directory = elementArray.length > 3 ? elementArray[3].intern() : defaultStorageDirectoryPath;
+
+        //entries written before sequence numbers all get the same version, which is still distinct from a missing key
+        long sequenceNumber = elementArray.length > 4 ? Long.parseLong(elementArray[4]) : LEGACY_SEQUENCE_NUMBER;
+
+        //entries written before the dictionary column hold values compressed without a dictionary
+        int dictionaryId = elementArray.length > 5 ? Integer.parseInt(elementArray[5]) : 0;
+
+        return new ValuePointer(elementArray[1], Long.parseLong(elementArray[2]), directory, sequenceNumber, dictionaryId);
+    }
+
+}
@@ -5,6 +5,8 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.File;
+
 @Getter
 @Setter
 @AllArgsConstructor
@@ -14,4 +16,15 @@ public final class ValuePointer {
     private String filename;
 
     private long lineNumber;
+
+    private String directory;
+
+    private long sequenceNumber;
+
+    //id of the compression dictionary of the value, 0 if there is none
+    private int dictionaryId;
+
+    public File getFile() {
+        return new File(directory, filename);
+    }
 }
@@ -0,0 +1,16 @@
+package com.ally.db.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Compressed value waiting in a buffer together with the sequence number of the write.
+ */
+@Getter
+@AllArgsConstructor
+public final class VersionedValue {
+
+    private final byte[] value;
+
+    private final long sequenceNumber;
+}
@@ -0,0 +1,12 @@
+package com.ally.db.memory;
+
+/**
+ * Which value the {@link SlabStore} drops when there is no room for a new one.
+ */
+public enum EvictionPolicy {
+
+    LRU,
+
+    //approximated among the least recently used values, so values which were popular long ago still leave
+    LFU
+}
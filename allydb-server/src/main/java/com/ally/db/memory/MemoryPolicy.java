@@ -0,0 +1,27 @@
+package com.ally.db.memory;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Knobs of the in-memory engine.
+ */
+@Getter
+@Builder
+public final class MemoryPolicy {
+
+    //off-heap memory for compressed values of the whole server
+    @Builder.Default
+    private final long maxBytes = 256L * 1024 * 1024;
+
+    //memory is taken in slabs of this size, larger values are not stored
+    @Builder.Default
+    private final int slabSize = 1024 * 1024;
+
+    @Builder.Default
+    private final EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+
+    //0 turns the snapshots off
+    @Builder.Default
+    private final long snapshotIntervalSeconds = 0;
+}
@@ -0,0 +1,413 @@
+package com.ally.db.memory;
+
+import com.ally.db.index.VersionedValue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Values in off-heap slabs, indexed by key hash.
+ * <p>
+ * Like in memcached, values are kept in chunks of size classes growing by a constant factor,
+ * every slab is cut into chunks of one class. When a class has no free chunk and no new slab fits
+ * into the memory limit, an empty slab of another class is cut anew. Otherwise a value of the same class is evicted,
+ * unless another class holds values which were not accessed for longer: then the slab of the least recently
+ * used of them is emptied and moved over, so the memory follows the sizes of the values over time.
+ * <p>
+ * Not thread safe, the caller holds the lock.
+ */
+public class SlabStore {
+
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final double GROWTH_FACTOR = 1.25;
+    private static final int CHUNK_ALIGNMENT = 8;
+
+    //how many of the least recently used values are compared by frequency
+    private static final int LFU_CANDIDATES = 16;
+
+    private final Consumer<String> evictionListener;
+    private final int slabSize;
+    private final int maxSlabs;
+    private final EvictionPolicy evictionPolicy;
+    private final int[] chunkSizes;
+
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    //size class of every slab and the number of its chunks in use
+    private final int[] slabSizeClasses;
+    private final int[] usedChunks;
+    private int emptySlabs;
+    private final List<ArrayDeque<Long>> freeChunks = new ArrayList<>();
+    //per size class in access order, the least recently used value comes first
+    private final List<LinkedHashMap<String, Entry>> entriesBySizeClass = new ArrayList<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    //counts puts and gets, the least recently used values of different classes are compared by it
+    private long accessClock;
+
+    public SlabStore(long maxBytes, int slabSize, EvictionPolicy evictionPolicy) {
+        this(maxBytes, slabSize, evictionPolicy, hash -> {
+        });
+    }
+
+    /**
+     * @param evictionListener gets the hash of every evicted value, while the caller still holds the lock
+     */
+    public SlabStore(long maxBytes, int slabSize, EvictionPolicy evictionPolicy, Consumer<String> evictionListener) {
+        this.evictionListener = evictionListener;
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.max(1, maxBytes / slabSize);
+        this.evictionPolicy = evictionPolicy;
+        this.chunkSizes = chunkSizes(slabSize);
+        this.slabSizeClasses = new int[maxSlabs];
+        this.usedChunks = new int[maxSlabs];
+
+        for (int i = 0; i < chunkSizes.length; i++) {
+            freeChunks.add(new ArrayDeque<>());
+            entriesBySizeClass.add(new LinkedHashMap<>(16, 0.75f, true));
+        }
+    }
+
+    /**
+     * @return false if the value is larger than a slab
+     */
+    public boolean fits(int length) {
+        return length <= slabSize;
+    }
+
+    /**
+     * @return false if the value is larger than a slab or there is no room for it, the previous value is kept then
+     */
+    public boolean put(String hash, byte[] value, long sequenceNumber) {
+
+        int sizeClass = sizeClassFor(value.length);
+
+        if (sizeClass < 0) {
+            return false;
+        }
+
+        Entry previousEntry = entries.get(hash);
+        long address;
+
+        if (previousEntry != null && previousEntry.sizeClass == sizeClass) {
+
+            //the chunk of the previous value is reused, so nothing is evicted
+            entries.remove(hash);
+            entriesBySizeClass.get(sizeClass).remove(hash);
+            address = previousEntry.address;
+
+        } else {
+
+            address = allocate(sizeClass);
+
+            if (address < 0) {
+                return false;
+            }
+
+            //the previous value goes only once the new one has its chunk, it may have been evicted meanwhile
+            remove(hash);
+        }
+
+        ByteBuffer slab = slabs.get(slabIndex(address)).duplicate();
+        slab.position(offset(address));
+        slab.put(value);
+
+        Entry entry = new Entry(sizeClass, address, value.length, sequenceNumber);
+        entry.lastAccess = ++accessClock;
+        entries.put(hash, entry);
+        entriesBySizeClass.get(sizeClass).put(hash, entry);
+
+        return true;
+    }
+
+    /**
+     * @return the value or null, counts as an access for the eviction
+     */
+    public byte[] get(String hash) {
+
+        Entry entry = entries.get(hash);
+
+        if (entry == null) {
+            return null;
+        }
+
+        //moves the value to the end of the access order
+        entriesBySizeClass.get(entry.sizeClass).get(hash);
+        entry.lastAccess = ++accessClock;
+
+        if (entry.frequency < Integer.MAX_VALUE) {
+            entry.frequency++;
+        }
+
+        return read(entry);
+    }
+
+    /**
+     * @return the sequence number of the value, 0 if there is no such value
+     */
+    public long sequenceNumber(String hash) {
+        Entry entry = entries.get(hash);
+        return entry == null ? 0 : entry.sequenceNumber;
+    }
+
+    public boolean remove(String hash) {
+
+        Entry entry = entries.remove(hash);
+
+        if (entry == null) {
+            return false;
+        }
+
+        entriesBySizeClass.get(entry.sizeClass).remove(hash);
+        freeChunks.get(entry.sizeClass).push(entry.address);
+
+        if (--usedChunks[slabIndex(entry.address)] == 0) {
+            emptySlabs++;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return hashes of all values, e.g. to read them for a snapshot in batches
+     */
+    public List<String> hashes() {
+        return new ArrayList<>(entries.keySet());
+    }
+
+    /**
+     * @return the value and its sequence number or null, does not count as an access
+     */
+    public VersionedValue peek(String hash) {
+        Entry entry = entries.get(hash);
+        return entry == null ? null : new VersionedValue(read(entry), entry.sequenceNumber);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private long allocate(int sizeClass) {
+
+        ArrayDeque<Long> free = freeChunks.get(sizeClass);
+
+        if (free.isEmpty() && slabs.size() < maxSlabs) {
+            addSlab(sizeClass);
+        }
+
+        if (free.isEmpty() && emptySlabs > 0) {
+            reuseEmptySlab(sizeClass);
+        }
+
+        if (free.isEmpty()) {
+
+            int victimSizeClass = leastRecentlyUsedSizeClass(sizeClass);
+
+            if (victimSizeClass >= 0) {
+                moveSlab(victimSizeClass, sizeClass);
+            } else {
+                evict(sizeClass);
+            }
+        }
+
+        if (free.isEmpty()) {
+            return -1;
+        }
+
+        long address = free.pop();
+
+        if (usedChunks[slabIndex(address)]++ == 0) {
+            emptySlabs--;
+        }
+
+        return address;
+    }
+
+    private void addSlab(int sizeClass) {
+
+        int slabIndex = slabs.size();
+        slabs.add(ByteBuffer.allocateDirect(slabSize));
+        emptySlabs++;
+
+        cutSlab(slabIndex, sizeClass);
+    }
+
+    private void cutSlab(int slabIndex, int sizeClass) {
+
+        slabSizeClasses[slabIndex] = sizeClass;
+
+        int chunkSize = chunkSizes[sizeClass];
+        ArrayDeque<Long> free = freeChunks.get(sizeClass);
+
+        for (int offset = 0; offset + chunkSize <= slabSize; offset += chunkSize) {
+            free.add(((long) slabIndex << 32) | offset);
+        }
+    }
+
+    private void reuseEmptySlab(int sizeClass) {
+        for (int slabIndex = 0; slabIndex < slabs.size(); slabIndex++) {
+            if (usedChunks[slabIndex] == 0 && slabSizeClasses[slabIndex] != sizeClass) {
+                reassignSlab(slabIndex, sizeClass);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the other class whose least recently used value is older than the one of the given class, or -1
+     */
+    private int leastRecentlyUsedSizeClass(int sizeClass) {
+
+        Entry ownOldest = oldestEntry(sizeClass);
+
+        //a class without values can only get memory from the others
+        long oldestAccess = ownOldest == null ? Long.MAX_VALUE : ownOldest.lastAccess;
+        int victimSizeClass = -1;
+
+        for (int otherSizeClass = 0; otherSizeClass < chunkSizes.length; otherSizeClass++) {
+
+            if (otherSizeClass == sizeClass) {
+                continue;
+            }
+
+            Entry oldest = oldestEntry(otherSizeClass);
+
+            if (oldest != null && oldest.lastAccess < oldestAccess) {
+                oldestAccess = oldest.lastAccess;
+                victimSizeClass = otherSizeClass;
+            }
+        }
+
+        return victimSizeClass;
+    }
+
+    /**
+     * Evicts all values of the slab holding the least recently used value of one class and cuts it for another.
+     */
+    private void moveSlab(int fromSizeClass, int toSizeClass) {
+
+        int slabIndex = slabIndex(oldestEntry(fromSizeClass).address);
+
+        List<String> victims = new ArrayList<>();
+
+        entriesBySizeClass.get(fromSizeClass).forEach((hash, entry) -> {
+            if (slabIndex(entry.address) == slabIndex) {
+                victims.add(hash);
+            }
+        });
+
+        victims.forEach(this::evictValue);
+
+        reassignSlab(slabIndex, toSizeClass);
+    }
+
+    private void reassignSlab(int slabIndex, int sizeClass) {
+
+        freeChunks.get(slabSizeClasses[slabIndex]).removeIf(address -> slabIndex(address) == slabIndex);
+
+        cutSlab(slabIndex, sizeClass);
+    }
+
+    private Entry oldestEntry(int sizeClass) {
+        Iterator<Entry> iterator = entriesBySizeClass.get(sizeClass).values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private boolean evict(int sizeClass) {
+
+        Iterator<Map.Entry<String, Entry>> iterator = entriesBySizeClass.get(sizeClass).entrySet().iterator();
+
+        if (!iterator.hasNext()) {
+            return false;
+        }
+
+        Map.Entry<String, Entry> victim = iterator.next();
+
+        if (evictionPolicy == EvictionPolicy.LFU) {
+            for (int i = 1; i < LFU_CANDIDATES && iterator.hasNext(); i++) {
+                Map.Entry<String, Entry> candidate = iterator.next();
+                if (candidate.getValue().frequency < victim.getValue().frequency) {
+                    victim = candidate;
+                }
+            }
+        }
+
+        return evictValue(victim.getKey());
+    }
+
+    private boolean evictValue(String hash) {
+
+        if (!remove(hash)) {
+            return false;
+        }
+
+        evictionListener.accept(hash);
+
+        return true;
+    }
+
+    private byte[] read(Entry entry) {
+        byte[] value = new byte[entry.length];
+        ByteBuffer slab = slabs.get(slabIndex(entry.address)).duplicate();
+        slab.position(offset(entry.address));
+        slab.get(value);
+        return value;
+    }
+
+    private int sizeClassFor(int length) {
+        for (int i = 0; i < chunkSizes.length; i++) {
+            if (chunkSizes[i] >= length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] chunkSizes(int slabSize) {
+
+        List<Integer> sizes = new ArrayList<>();
+
+        for (double size = MIN_CHUNK_SIZE; size < slabSize; size *= GROWTH_FACTOR) {
+            int alignedSize = ((int) size + CHUNK_ALIGNMENT - 1) / CHUNK_ALIGNMENT * CHUNK_ALIGNMENT;
+            if (sizes.isEmpty() || sizes.get(sizes.size() - 1) < alignedSize) {
+                sizes.add(alignedSize);
+            }
+        }
+
+        //the largest class takes a whole slab
+        sizes.add(slabSize);
+
+        return sizes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static final class Entry {
+
+        private final int sizeClass;
+        private final long address;
+        private final int length;
+        private final long sequenceNumber;
+        private int frequency;
+        private long lastAccess;
+
+        private Entry(int sizeClass, long address, int length, long sequenceNumber) {
+            this.sizeClass = sizeClass;
+            this.address = address;
+            this.length = length;
+            this.sequenceNumber = sequenceNumber;
+        }
+    }
+}
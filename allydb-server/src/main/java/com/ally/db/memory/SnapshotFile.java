@@ -0,0 +1,127 @@
+package com.ally.db.memory;
+
+import com.ally.db.index.VersionedValue;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.BiConsumer;
+
+/**
+ * Single file snapshot of the in-memory engine.
+ * <p>
+ * Structure: {@code magic | (1 | hash | sequence number | length | compressed value)* | 0}.
+ * Values are streamed in, so the number of values is not known up front and a marker byte precedes each of them.
+ */
+@Slf4j
+public class SnapshotFile {
+
+    private static final int MAGIC = 0x41424232;
+    private static final int VALUE_MARKER = 1;
+    private static final int END_MARKER = 0;
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+
+    private final File file;
+
+    public SnapshotFile(File file) {
+        this.file = file;
+    }
+
+    public boolean exists() {
+        return file.exists();
+    }
+
+    /**
+     * Starts a new snapshot in a temporary file, which replaces the previous snapshot only on {@link Writer#commit()},
+     * so a crash while writing keeps the previous one.
+     */
+    public Writer newWriter() throws IOException {
+        return new Writer();
+    }
+
+    /**
+     * Passes every value of the snapshot to the consumer, without keeping them all on the heap.
+     *
+     * @return the number of values
+     */
+    public long load(BiConsumer<String, VersionedValue> consumer) throws IOException {
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot file");
+            }
+
+            long numberOfValues = 0;
+
+            for (; input.readByte() == VALUE_MARKER; numberOfValues++) {
+                readValue(input, consumer);
+            }
+
+            return numberOfValues;
+        }
+    }
+
+    private static void readValue(DataInputStream input, BiConsumer<String, VersionedValue> consumer) throws IOException {
+        String hash = input.readUTF();
+        long sequenceNumber = input.readLong();
+        byte[] value = new byte[input.readInt()];
+        input.readFully(value);
+        consumer.accept(hash, new VersionedValue(value, sequenceNumber));
+    }
+
+    public final class Writer implements Closeable {
+
+        private final File tempFile = new File(file.getPath() + TEMP_FILE_EXTENSION);
+        private final DataOutputStream output;
+
+        private long numberOfValues;
+        private boolean committed;
+
+        private Writer() throws IOException {
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())));
+            output.writeInt(MAGIC);
+        }
+
+        public void append(String hash, VersionedValue versionedValue) throws IOException {
+            output.writeByte(VALUE_MARKER);
+            output.writeUTF(hash);
+            output.writeLong(versionedValue.getSequenceNumber());
+            output.writeInt(versionedValue.getValue().length);
+            output.write(versionedValue.getValue());
+            numberOfValues++;
+        }
+
+        /**
+         * Replaces the previous snapshot with the values appended so far.
+         */
+        public void commit() throws IOException {
+
+            output.writeByte(END_MARKER);
+            output.close();
+
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+
+            log.info("Snapshot of {} values was written on disk", numberOfValues);
+        }
+
+        /**
+         * Drops the temporary file, unless the snapshot was committed.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                output.close();
+                Files.deleteIfExists(tempFile.toPath());
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.ally.db.proto.impl;
+
+import com.ally.db.AllyShards;
+import com.ally.db.CompareAndSetResult;
+import com.ally.db.WriteBatch;
+import com.ally.db.feed.ChangeEvent;
+import com.ally.db.feed.Subscription;
+import com.ally.proto.AdoptRequest;
+import com.ally.proto.AdoptResponse;
+import com.ally.proto.BatchOperation;
+import com.ally.proto.CompareAndSetRequest;
+import com.ally.proto.CompareAndSetResponse;
+import com.ally.proto.GetRequest;
+import com.ally.proto.GetResponse;
+import com.ally.proto.MultiGetRequest;
+import com.ally.proto.MultiGetResponse;
+import com.ally.proto.PutRequest;
+import com.ally.proto.PutResponse;
+import com.ally.proto.AllyServiceGrpc;
+import com.ally.proto.WriteBatchRequest;
+import com.ally.proto.WatchEvent;
+import com.ally.proto.WatchRequest;
+import com.ally.proto.WriteBatchResponse;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+
+@Slf4j
+public class AllyServiceImpl extends AllyServiceGrpc.AllyServiceImplBase {
+
+    private static final long WATCH_WAIT_MILLIS = 100;
+
+    private final AllyShards allyShards;
+
+    //every watcher is served by its own thread, which waits for events and for the client to be ready
+    private final ExecutorService watchExecutor = Executors.newCachedThreadPool();
+
+    public AllyServiceImpl(AllyShards allyShards) {
+        this.allyShards = allyShards;
+    }
+
+    @Override
+    public void get(GetRequest request, StreamObserver<GetResponse> responseObserver) {
+
+        //the handler thread is released while the value is read
+        getResponse(request.getKey().toByteArray()).whenComplete((getResponse, e) -> {
+
+            if (e != null) {
+                responseObserver.onError(Status.INTERNAL.withDescription("Failed to get value").withCause(e).asRuntimeException());
+                return;
+            }
+
+            responseObserver.onNext(getResponse);
+            responseObserver.onCompleted();
+        });
+    }
+
+    @Override
+    public void multiGet(MultiGetRequest request, StreamObserver<MultiGetResponse> responseObserver) {
+
+        //all keys are read concurrently, reads of keys in the same partition share the I/O executor
+        List<CompletableFuture<GetResponse>> getResponses = request.getKeysList().stream()
+                .map(key -> getResponse(key.toByteArray()))
+                .collect(Collectors.toList());
+
+        CompletableFuture.allOf(getResponses.toArray(new CompletableFuture[0])).whenComplete((result, e) -> {
+
+            if (e != null) {
+                responseObserver.onError(Status.INTERNAL.withDescription("Failed to get values").withCause(e).asRuntimeException());
+                return;
+            }
+
+            MultiGetResponse multiGetResponse = MultiGetResponse.newBuilder()
+                    .addAllResponses(getResponses.stream().map(CompletableFuture::join).collect(Collectors.toList()))
+                    .build();
+
+            responseObserver.onNext(multiGetResponse);
+            responseObserver.onCompleted();
+        });
+    }
+
+    @Override
+    public void put(PutRequest request, StreamObserver<PutResponse> responseObserver) {
+
+        byte[] key = request.getKey().toByteArray();
+        byte[] value = request.getValue().toByteArray();
+
+        allyShards.putAsync(key, value).whenComplete((stored, e) -> {
+
+            if (e != null) {
+                responseObserver.onError(Status.INTERNAL.withDescription("Failed to put value").withCause(e).asRuntimeException());
+                return;
+            }
+
+            PutResponse putResponse = PutResponse.newBuilder()
+                    .setResponseStatus(stored ? "OK" : "Value not stored")
+                    .build();
+
+            responseObserver.onNext(putResponse);
+            responseObserver.onCompleted();
+        });
+    }
+
+    @Override
+    public void writeBatch(WriteBatchRequest request, StreamObserver<WriteBatchResponse> responseObserver) {
+
+        WriteBatch writeBatch = new WriteBatch();
+
+        for (BatchOperation operation : request.getOperationsList()) {
+            if (operation.getDelete()) {
+                writeBatch.delete(operation.getKey().toByteArray());
+            } else {
+                writeBatch.put(operation.getKey().toByteArray(), operation.getValue().toByteArray());
+            }
+        }
+
+        boolean applied = allyShards.write(writeBatch);
+
+        WriteBatchResponse writeBatchResponse = WriteBatchResponse.newBuilder()
+                .setResponseStatus(applied ? "OK" : "Batch not applied")
+                .build();
+
+        responseObserver.onNext(writeBatchResponse);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void compareAndSet(CompareAndSetRequest request, StreamObserver<CompareAndSetResponse> responseObserver) {
+
+        byte[] key = request.getKey().toByteArray();
+        byte[] value = request.getValue().toByteArray();
+
+        CompareAndSetResult result = allyShards.compareAndSet(key, request.getExpectedVersion(), value);
+
+        CompareAndSetResponse compareAndSetResponse = CompareAndSetResponse.newBuilder()
+                .setApplied(result.isApplied())
+                .setVersion(result.getVersion())
+                .setResponseStatus(result.isApplied() ? "OK" : "Version mismatch")
+                .build();
+
+        responseObserver.onNext(compareAndSetResponse);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void adopt(AdoptRequest request, StreamObserver<AdoptResponse> responseObserver) {
+
+        //clients must not be able to point the server at arbitrary paths, so only the bulk load directory is adopted
+        boolean adopted = allyShards.adopt(allyShards.bulkLoadDirectoryPath());
+
+        AdoptResponse adoptResponse = AdoptResponse.newBuilder()
+                .setResponseStatus(adopted ? "OK" : "Failed to adopt")
+                .build();
+
+        responseObserver.onNext(adoptResponse);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void watch(WatchRequest request, StreamObserver<WatchEvent> responseObserver) {
+
+        Optional<Subscription> optionalSubscription = allyShards.watch(request.getFromSequenceNumber());
+
+        if (!optionalSubscription.isPresent()) {
+            responseObserver.onError(Status.OUT_OF_RANGE
+                    .withDescription("Changes from sequence number " + request.getFromSequenceNumber() + " are not retained anymore")
+                    .asRuntimeException());
+            return;
+        }
+
+        Subscription subscription = optionalSubscription.get();
+
+        ServerCallStreamObserver<WatchEvent> serverCallStreamObserver = (ServerCallStreamObserver<WatchEvent>) responseObserver;
+
+        Object readyLock = new Object();
+
+        serverCallStreamObserver.setOnReadyHandler(() -> {
+            synchronized (readyLock) {
+                readyLock.notifyAll();
+            }
+        });
+        serverCallStreamObserver.setOnCancelHandler(subscription::close);
+
+        watchExecutor.execute(() -> streamChanges(subscription, serverCallStreamObserver, readyLock, request.getIncludeValues()));
+    }
+
+    private void streamChanges(Subscription subscription, ServerCallStreamObserver<WatchEvent> responseObserver, Object readyLock, boolean includeValues) {
+
+        try {
+
+            //tells the client which changes it will get, until then it can not know whether it missed one
+            responseObserver.onNext(WatchEvent.newBuilder()
+                    .setSequenceNumber(subscription.getPosition())
+                    .setType(WatchEvent.Type.STARTED)
+                    .build());
+
+            while (!responseObserver.isCancelled()) {
+
+                //events are sent only as fast as the client reads them, meanwhile they wait in the ring buffer of the subscription
+                if (!responseObserver.isReady()) {
+                    synchronized (readyLock) {
+                        readyLock.wait(WATCH_WAIT_MILLIS);
+                    }
+                    continue;
+                }
+
+                ChangeEvent event = subscription.poll(WATCH_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+
+                if (event != null) {
+                    responseObserver.onNext(toWatchEvent(event, includeValues));
+                } else if (subscription.isOverflowed()) {
+                    //all buffered events were sent, so the client can resume right after the last one it received
+                    responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                            .withDescription("Watcher fell behind, resume from the next sequence number")
+                            .asRuntimeException());
+                    return;
+                }
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            responseObserver.onError(Status.UNAVAILABLE.withDescription("Watch interrupted").asRuntimeException());
+        } catch (DataFormatException | IOException e) {
+            log.error("Failed to decompress data", e);
+            responseObserver.onError(Status.INTERNAL.withDescription("Failed to decompress value").withCause(e).asRuntimeException());
+        } catch (StatusRuntimeException e) {
+            log.info("Watcher went away: {}", e.getStatus());
+        } finally {
+            subscription.close();
+        }
+    }
+
+    private CompletableFuture<GetResponse> getResponse(byte[] key) {
+
+        //the version is read before the value, so it is never newer than the value
+        //and a compare-and-set based on it can only fail, not overwrite a value the client has not seen
+        long version = allyShards.getVersion(key);
+
+        return allyShards.getAsync(key).thenApply(value -> GetResponse.newBuilder()
+                .setValue(ByteString.copyFrom(value))
+                .setResponseStatus(value.length != 0 ? "Found" : "Not found")
+                .setVersion(version)
+                .build());
+    }
+
+    private static WatchEvent toWatchEvent(ChangeEvent event, boolean includeValues) throws DataFormatException, IOException {
+
+        WatchEvent.Builder builder = WatchEvent.newBuilder()
+                .setSequenceNumber(event.getSequenceNumber())
+                .setType(WatchEvent.Type.valueOf(event.getType().name()))
+                .setVersion(event.getVersion());
+
+        if (event.getHashedKey() != null) {
+            builder.setHashedKey(event.getHashedKey());
+        }
+
+        if (includeValues) {
+            builder.setValue(ByteString.copyFrom(event.decompressValue()));
+        }
+
+        return builder.build();
+    }
+}
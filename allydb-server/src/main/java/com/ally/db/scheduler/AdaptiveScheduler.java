@@ -0,0 +1,92 @@
+package com.ally.db.scheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when to flush the buffers, write the index and collect garbage from live signals instead of fixed rates.
+ * <p>
+ * Under load only the work that can not wait is done: buffers over the size limit or older than the maximum delay,
+ * and garbage over the urgent ratio. When the load drops the postponed work catches up,
+ * and garbage below the urgent ratio is only collected when the storage is idle.
+ * All work runs on one thread, so the jobs never compete with each other for the storage lock.
+ */
+@Slf4j
+public class AdaptiveScheduler {
+
+    private final FlushPolicy flushPolicy;
+    private final LoadMonitor loadMonitor;
+    private final ScheduledWork work;
+    private final ScheduledExecutorService scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+
+    private long lastIndexCheckpointMillis = System.currentTimeMillis();
+
+    public AdaptiveScheduler(FlushPolicy flushPolicy, LoadMonitor loadMonitor, ScheduledWork work) {
+        this.flushPolicy = flushPolicy;
+        this.loadMonitor = loadMonitor;
+        this.work = work;
+    }
+
+    public void start() {
+        scheduledExecutorService.scheduleWithFixedDelay(this::tick, flushPolicy.getTickMillis(), flushPolicy.getTickMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void tick() {
+        try {
+
+            loadMonitor.sample();
+
+            long now = System.currentTimeMillis();
+
+            boolean busy = loadMonitor.getWritesPerSecond() > flushPolicy.getBusyWritesPerSecond()
+                    || loadMonitor.getLatencyMicros() > flushPolicy.getLatencyTargetMicros();
+
+            boolean idle = !busy && loadMonitor.getWritesPerSecond() <= flushPolicy.getIdleWritesPerSecond();
+
+            if (shouldFlush(now, busy)) {
+                work.flushBuffers();
+            }
+
+            if (work.indexDirty() && shouldCheckpointIndex(now, busy)) {
+                work.checkpointIndex();
+                lastIndexCheckpointMillis = now;
+            }
+
+            double garbageRatio = work.garbageRatio();
+
+            if (garbageRatio >= flushPolicy.getGcUrgentGarbageRatio() || (idle && garbageRatio >= flushPolicy.getGcGarbageRatio())) {
+                work.collectGarbage();
+            }
+
+        } catch (RuntimeException e) {
+            //an exception would cancel all further ticks
+            log.error("Scheduled work failed", e);
+        }
+    }
+
+    private boolean shouldFlush(long now, boolean busy) {
+
+        long oldestBufferedWriteMillis = work.oldestBufferedWriteMillis();
+
+        if (oldestBufferedWriteMillis == 0) {
+            return false;
+        }
+
+        long age = now - oldestBufferedWriteMillis;
+
+        return work.bufferedBytes() >= flushPolicy.getFlushBufferBytes()
+                || age >= flushPolicy.getFlushMaxDelayMillis()
+                || (!busy && age >= flushPolicy.getFlushMinDelayMillis());
+    }
+
+    private boolean shouldCheckpointIndex(long now, boolean busy) {
+
+        long age = now - lastIndexCheckpointMillis;
+
+        return age >= flushPolicy.getIndexMaxDelayMillis()
+                || (!busy && age >= flushPolicy.getIndexMinDelayMillis());
+    }
+}
@@ -0,0 +1,53 @@
+package com.ally.db.scheduler;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Knobs of the {@link AdaptiveScheduler}. The defaults are close to the former fixed schedule:
+ * buffers reach the disk within 5 seconds and the index within 10 seconds even under load.
+ */
+@Getter
+@Builder
+public final class FlushPolicy {
+
+    //how often the scheduler looks at the signals
+    @Builder.Default
+    private final long tickMillis = 250;
+
+    //buffered bytes which are flushed right away, regardless of the load
+    @Builder.Default
+    private final long flushBufferBytes = 1024 * 1024;
+
+    //how long buffered writes wait when the storage is not busy
+    @Builder.Default
+    private final long flushMinDelayMillis = 500;
+
+    //how long buffered writes wait at most, even when the storage is busy
+    @Builder.Default
+    private final long flushMaxDelayMillis = 5000;
+
+    @Builder.Default
+    private final long indexMinDelayMillis = 2000;
+
+    @Builder.Default
+    private final long indexMaxDelayMillis = 10000;
+
+    //share of garbage lines from which the garbage collection runs when the storage is idle
+    @Builder.Default
+    private final double gcGarbageRatio = 0.2;
+
+    //share of garbage lines from which the garbage collection runs even when the storage is busy
+    @Builder.Default
+    private final double gcUrgentGarbageRatio = 0.5;
+
+    @Builder.Default
+    private final double busyWritesPerSecond = 5000;
+
+    @Builder.Default
+    private final double idleWritesPerSecond = 50;
+
+    //average latency of foreground operations above which the storage counts as busy
+    @Builder.Default
+    private final long latencyTargetMicros = 2000;
+}
@@ -0,0 +1,62 @@
+package com.ally.db.scheduler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects foreground load: the rate of writes and the latency of gets and puts.
+ * Recording is lock free, the scheduler samples and smooths the values once per tick.
+ */
+public class LoadMonitor {
+
+    //weight of the latest sample in the moving averages
+    private static final double SMOOTHING = 0.3;
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder operationsNanos = new LongAdder();
+
+    private long lastSampleNanos = System.nanoTime();
+
+    private double writesPerSecond;
+    private double latencyMicros;
+
+    public void recordWrite() {
+        writes.increment();
+    }
+
+    public void recordOperation(long startNanos) {
+        operations.increment();
+        operationsNanos.add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Called by the scheduler thread only.
+     */
+    void sample() {
+
+        long now = System.nanoTime();
+        double elapsedSeconds = Math.max(1, now - lastSampleNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastSampleNanos = now;
+
+        writesPerSecond = smooth(writesPerSecond, writes.sumThenReset() / elapsedSeconds);
+
+        long sampledOperations = operations.sumThenReset();
+        long sampledNanos = operationsNanos.sumThenReset();
+
+        double sampledLatencyMicros = sampledOperations == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(sampledNanos / sampledOperations);
+        latencyMicros = smooth(latencyMicros, sampledLatencyMicros);
+    }
+
+    double getWritesPerSecond() {
+        return writesPerSecond;
+    }
+
+    double getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    private static double smooth(double average, double sample) {
+        return average + SMOOTHING * (sample - average);
+    }
+}
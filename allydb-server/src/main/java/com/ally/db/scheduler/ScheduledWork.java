@@ -0,0 +1,22 @@
+package com.ally.db.scheduler;
+
+/**
+ * Background work of a storage together with the signals the {@link AdaptiveScheduler} needs to plan it.
+ */
+public interface ScheduledWork {
+
+    long bufferedBytes();
+
+    //System.currentTimeMillis() of the oldest buffered write, 0 if the buffers are empty
+    long oldestBufferedWriteMillis();
+
+    boolean indexDirty();
+
+    double garbageRatio();
+
+    void flushBuffers();
+
+    void checkpointIndex();
+
+    void collectGarbage();
+}
@@ -0,0 +1,11 @@
+package com.ally.db.storage;
+
+/**
+ * How new storage files are spread across the data directories.
+ */
+public enum SegmentPlacement {
+
+    ROUND_ROBIN,
+
+    FREE_SPACE
+}
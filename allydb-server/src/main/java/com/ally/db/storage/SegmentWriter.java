@@ -0,0 +1,87 @@
+package com.ally.db.storage;
+
+import com.ally.db.index.ValuePointer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes storage files of the bulk loader sequentially through one large buffer,
+ * a file is sealed and the next one started when it reaches the segment size.
+ * Files have the same structure as the ones written by {@link StorageFileWrapper}.
+ */
+@Slf4j
+public class SegmentWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final String directoryPath;
+    private final long segmentSize;
+
+    private BufferedWriter writer;
+    private File currentSegment;
+    private long currentSize;
+    private long nextLineNumber;
+
+    public SegmentWriter(String directoryPath, long segmentSize) {
+        this.directoryPath = directoryPath;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Appends the line of one value and returns the pointer to it.
+     */
+    public ValuePointer append(String hashedKey, String hexedValue, long sequenceNumber) throws IOException {
+
+        if (writer == null || currentSize >= segmentSize) {
+            startSegment();
+        }
+
+        //hashes and hex are ASCII, so the number of chars is the number of bytes
+        writer.write(hashedKey);
+        writer.write('|');
+        writer.write(hexedValue);
+        writer.write(LINE_SEPARATOR);
+
+        currentSize += hashedKey.length() + 1 + hexedValue.length() + LINE_SEPARATOR.length();
+
+        //the bulk loader compresses without a dictionary
+        return new ValuePointer(currentSegment.getName(), nextLineNumber++, directoryPath, sequenceNumber, 0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        sealSegment();
+    }
+
+    private void startSegment() throws IOException {
+
+        sealSegment();
+
+        currentSegment = new File(directoryPath, StorageFileWrapper.newFileName());
+        writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(currentSegment.toPath(), StandardOpenOption.CREATE_NEW),
+                StandardCharsets.US_ASCII), BUFFER_SIZE);
+        currentSize = 0;
+        nextLineNumber = 1;
+    }
+
+    private void sealSegment() throws IOException {
+
+        if (writer == null) {
+            return;
+        }
+
+        writer.close();
+        writer = null;
+
+        log.info("Sealed storage file {} of {} bytes", currentSegment.getName(), currentSize);
+    }
+}
@@ -0,0 +1,70 @@
+package com.ally.db.storage;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Data directories of one storage. The first directory is the primary one and holds the index,
+ * new storage files are placed on all of them according to the {@link SegmentPlacement}.
+ */
+@Slf4j
+public class StorageDirectories {
+
+    @Getter
+    private final List<File> directories;
+
+    private final SegmentPlacement segmentPlacement;
+
+    private int nextDirectory = 0;
+
+    public StorageDirectories(List<String> directoryPaths, SegmentPlacement segmentPlacement) {
+
+        if (directoryPaths == null || directoryPaths.isEmpty()) {
+            log.error("At least one data directory must be configured");
+            System.exit(-1);
+        }
+
+        List<File> files = new ArrayList<>(directoryPaths.size());
+
+        for (String directoryPath : directoryPaths) {
+            File directory = new File(directoryPath);
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            files.add(directory);
+        }
+
+        this.directories = Collections.unmodifiableList(files);
+        this.segmentPlacement = segmentPlacement;
+    }
+
+    public File primary() {
+        return directories.get(0);
+    }
+
+    /**
+     * Chooses the directory for the next storage file.
+     */
+    public File nextSegmentDirectory() {
+
+        if (directories.size() == 1) {
+            return primary();
+        }
+
+        if (segmentPlacement == SegmentPlacement.FREE_SPACE) {
+            return directories.stream()
+                    .max(Comparator.comparingLong(File::getUsableSpace))
+                    .orElse(primary());
+        }
+
+        File directory = directories.get(nextDirectory);
+        nextDirectory = (nextDirectory + 1) % directories.size();
+        return directory;
+    }
+}
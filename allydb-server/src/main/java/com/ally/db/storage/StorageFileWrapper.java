@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -13,6 +14,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Slf4j
 public class StorageFileWrapper {
@@ -24,14 +26,15 @@ public class StorageFileWrapper {
 
     private final File storageFile;
 
+    //kept once per file, every value pointer into this file references it
+    private final String directoryPath;
+
     @Getter
     private long numberOfLines = 1;
 
     public StorageFileWrapper(String dbDirectoryPath) throws IOException {
 
-        String filename = STORAGE_FILE_PREFIX + DASH.matcher(UUID.randomUUID().toString()).replaceAll(UNDERSCORE) + FILE_EXTENSION;
-
-        File file = new File(dbDirectoryPath + File.separator + filename);
+        File file = new File(dbDirectoryPath + File.separator + newFileName());
 
         if (file.createNewFile()) {
             log.info("Storage file was created");
@@ -40,6 +43,7 @@ public class StorageFileWrapper {
         }
 
         storageFile = file;
+        directoryPath = file.getParent();
 
     }
 
@@ -47,13 +51,15 @@ public class StorageFileWrapper {
 
         if (file.exists()) {
             storageFile = file;
+            directoryPath = file.getParent();
         } else {
             throw new IOException("File not found");
         }
 
-        try {
-            numberOfLines = Files.readAllLines(Paths.get(file.getPath())).size();
-        } catch (IOException e) {
+        //lines are counted without keeping them in memory, numberOfLines is the number of the next line
+        try (Stream<String> lines = Files.lines(Paths.get(file.getPath()))) {
+            numberOfLines = lines.count() + 1;
+        } catch (IOException | UncheckedIOException e) {
             throw new IOException("Failed to count lines of the file", e);
         }
 
@@ -103,5 +109,17 @@ public class StorageFileWrapper {
         return storageFile.getName();
     }
 
+    public String getDirectoryPath() {
+        return directoryPath;
+    }
+
+    public File getFile() {
+        return storageFile;
+    }
+
+    static String newFileName() {
+        return STORAGE_FILE_PREFIX + DASH.matcher(UUID.randomUUID().toString()).replaceAll(UNDERSCORE) + FILE_EXTENSION;
+    }
+
 
 }
@@ -0,0 +1,92 @@
+package com.ally.db.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.function.IntFunction;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+@Slf4j
+public final class CompressionUtil {
+
+    private static final int BUFFER_SIZE = 1024;
+    //zlib header flag of a preset dictionary, its 4 byte id follows the first 2 bytes
+    private static final int FDICT = 0x20;
+    private static final int HEADER_WITH_DICTIONARY_SIZE = 6;
+
+    public static byte[] compress(byte[] data) throws IOException {
+        return compress(data, null);
+    }
+
+    /**
+     * Compresses with a preset dictionary, if there is one. Deflate stores the id of the dictionary
+     * in the header of the result, {@link #decompress(byte[], IntFunction)} looks it up by that id.
+     */
+    public static byte[] compress(byte[] data, byte[] dictionary) throws IOException {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setLevel(Deflater.BEST_COMPRESSION);
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+            deflater.finish();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                outputStream.write(buffer, 0, count);
+            }
+            outputStream.close();
+            return outputStream.toByteArray();
+        } finally {
+            //frees native memory right away instead of waiting for finalization
+            deflater.end();
+        }
+    }
+
+    /**
+     * @return the id of the preset dictionary the data was compressed with, 0 if there is none
+     */
+    public static int dictionaryId(byte[] data) {
+
+        if (data.length < HEADER_WITH_DICTIONARY_SIZE || (data[1] & FDICT) == 0) {
+            return 0;
+        }
+
+        return (data[2] & 0xff) << 24 | (data[3] & 0xff) << 16 | (data[4] & 0xff) << 8 | data[5] & 0xff;
+    }
+
+    public static byte[] decompress(byte[] data) throws DataFormatException, IOException {
+        return decompress(data, dictionaryId -> null);
+    }
+
+    public static byte[] decompress(byte[] data, IntFunction<byte[]> dictionaries) throws DataFormatException, IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && inflater.needsDictionary()) {
+                    byte[] dictionary = dictionaries.apply(inflater.getAdler());
+                    if (dictionary == null) {
+                        throw new DataFormatException("Unknown compression dictionary " + Integer.toHexString(inflater.getAdler()));
+                    }
+                    inflater.setDictionary(dictionary);
+                } else if (count == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Compressed data is truncated");
+                }
+                outputStream.write(buffer, 0, count);
+            }
+            outputStream.close();
+            return  outputStream.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.ally.db;
+
+import com.ally.db.compression.DictionaryPolicy;
+import com.ally.db.feed.ChangeEvent;
+import com.ally.db.feed.ChangeFeed;
+import com.ally.db.feed.ChangeType;
+import com.ally.db.feed.Subscription;
+import com.ally.db.scheduler.FlushPolicy;
+import com.ally.db.storage.SegmentPlacement;
+import com.ally.db.util.HashUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class AllyTest {
+
+    private static final long WAIT_MILLIS = 2000;
+    private static final int STORAGE_FILE_SIZE = 256;
+    private static final int KEYS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    private ChangeFeed changeFeed;
+
+    @Before
+    public void setUp() {
+        changeFeed = new ChangeFeed(64, 64);
+    }
+
+    @After
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+    }
+
+    @Test
+    public void deleteOfBufferedKeyIsPublished() throws Exception {
+
+        Ally ally = open();
+        Subscription subscription = changeFeed.subscribe(0).get();
+
+        ally.put(bytes("key"), bytes("value"));
+        assertArrayEquals(bytes("value"), ally.get(bytes("key")));
+
+        //deleted before the flush, so the key never reached the index
+        ally.delete(bytes("key"));
+
+        ChangeEvent event = subscription.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        assertNotNull(event);
+        assertEquals(ChangeType.DELETE, event.getType());
+        assertEquals(HashUtil.getSHA256Hash(bytes("key")), event.getHashedKey());
+    }
+
+    @Test
+    public void storageFilesWithNoLiveValuesAreDeleted() throws Exception {
+
+        Ally ally = open();
+        Subscription subscription = changeFeed.subscribe(0).get();
+
+        //values larger than the storage file size, so every value gets a file of its own
+        for (int i = 0; i < KEYS; i++) {
+            ally.put(bytes("key" + i), randomValue(i));
+        }
+        poll(subscription, KEYS);
+
+        for (int i = 0; i < KEYS; i++) {
+            ally.delete(bytes("key" + i));
+        }
+        poll(subscription, KEYS);
+
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (storageFiles().length > 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        //only the current storage file is left
+        assertEquals(1, storageFiles().length);
+    }
+
+    @Test
+    public void batchWithEmptyValueIsNotApplied() {
+
+        Ally ally = open();
+
+        WriteBatch writeBatch = new WriteBatch()
+                .put(bytes("first"), bytes("value"))
+                .put(bytes("second"), new byte[0]);
+
+        assertTrue(writeBatch.isRejected());
+
+        ally.write(writeBatch);
+
+        assertEquals(0, ally.get(bytes("first")).length);
+    }
+
+    private Ally open() {
+        return new Ally(Collections.singletonList(folder.getRoot().getPath()), SegmentPlacement.ROUND_ROBIN,
+                FlushPolicy.builder().tickMillis(20).flushMinDelayMillis(50).flushMaxDelayMillis(100).build(), DictionaryPolicy.builder().build(),
+                changeFeed, ioExecutor, 100, 100, 100, STORAGE_FILE_SIZE);
+    }
+
+    private File[] storageFiles() {
+        return folder.getRoot().listFiles((dir, name) -> name.startsWith("s") && name.endsWith(".abby"));
+    }
+
+    private static void poll(Subscription subscription, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            assertNotNull(subscription.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    private static byte[] randomValue(int seed) {
+        byte[] value = new byte[STORAGE_FILE_SIZE];
+        new Random(seed).nextBytes(value);
+        return value;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,38 @@
+package com.ally.db;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class BulkLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void repeatedKeysAreLoadedOnce() throws Exception {
+
+        long loadedKeys = new BulkLoader(folder.getRoot().getPath(), 2, 4096).load(input("first\t1\nsecond\t2\nfirst\t3\nmalformed\n"));
+
+        assertEquals(2, loadedKeys);
+    }
+
+    @Test(expected = IOException.class)
+    public void outputOfEarlierRunIsNotMixedIn() throws Exception {
+
+        new BulkLoader(folder.getRoot().getPath(), 2, 4096).load(input("first\t1\nsecond\t2\n"));
+
+        new BulkLoader(folder.getRoot().getPath(), 2, 4096).load(input("third\t3\n"));
+    }
+
+    private static InputStream input(String lines) {
+        return new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,71 @@
+package com.ally.db;
+
+import com.ally.db.feed.ChangeFeed;
+import com.ally.db.memory.MemoryPolicy;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryAllyTest {
+
+    private static final int SLAB_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MemoryAlly memoryAlly;
+
+    @Before
+    public void setUp() {
+        memoryAlly = new MemoryAlly(folder.getRoot().getPath(), MemoryPolicy.builder().slabSize(SLAB_SIZE).build(), 4 * SLAB_SIZE, new ChangeFeed(16, 16));
+    }
+
+    @Test
+    public void compareAndSetAppliesOnExpectedVersion() {
+
+        CompareAndSetResult created = memoryAlly.compareAndSetHashed("key", 0, bytes("first"));
+        assertTrue(created.isApplied());
+
+        CompareAndSetResult stale = memoryAlly.compareAndSetHashed("key", 0, bytes("second"));
+        assertFalse(stale.isApplied());
+        assertEquals(created.getVersion(), stale.getVersion());
+
+        CompareAndSetResult updated = memoryAlly.compareAndSetHashed("key", created.getVersion(), bytes("second"));
+        assertTrue(updated.isApplied());
+        assertArrayEquals(bytes("second"), memoryAlly.getHashed("key"));
+    }
+
+    @Test
+    public void valueWhichDoesNotFitIsReportedAndKeepsPreviousValue() {
+
+        assertTrue(memoryAlly.putHashed("key", bytes("first")));
+        long version = memoryAlly.getVersionHashed("key");
+
+        //random bytes do not compress below the slab size
+        byte[] largeValue = new byte[2 * SLAB_SIZE];
+        new Random(1).nextBytes(largeValue);
+
+        assertFalse(memoryAlly.putHashed("key", largeValue));
+
+        CompareAndSetResult result = memoryAlly.compareAndSetHashed("key", version, largeValue);
+        assertFalse(result.isApplied());
+        assertEquals(version, result.getVersion());
+
+        assertArrayEquals(bytes("first"), memoryAlly.getHashed("key"));
+        assertFalse(memoryAlly.fits(Collections.singletonList(new WriteBatch.Operation("other", largeValue))));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
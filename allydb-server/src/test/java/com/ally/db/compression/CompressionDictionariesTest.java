@@ -0,0 +1,137 @@
+package com.ally.db.compression;
+
+import com.ally.db.util.CompressionUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CompressionDictionariesTest {
+
+    private static final int VALUES = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void valueCompressedWithDictionaryIsReadBackAfterRestart() throws Exception {
+
+        File directory = folder.getRoot();
+        CompressionDictionaries dictionaries = new CompressionDictionaries(DictionaryPolicy.builder().build(), directory);
+
+        train(dictionaries, this::jsonValue);
+
+        byte[] value = jsonValue(VALUES + 1);
+        byte[] dictionary = dictionaries.dictionaryFor(value);
+        assertNotNull(dictionary);
+
+        byte[] compressedValue = CompressionUtil.compress(value, dictionary);
+        int dictionaryId = CompressionUtil.dictionaryId(compressedValue);
+        assertNotEquals(0, dictionaryId);
+        assertEquals(0, CompressionUtil.dictionaryId(CompressionUtil.compress(value)));
+
+        assertArrayEquals(value, CompressionUtil.decompress(compressedValue, dictionaries::get));
+
+        CompressionDictionaries reloaded = new CompressionDictionaries(DictionaryPolicy.builder().build(), directory);
+        assertArrayEquals(value, CompressionUtil.decompress(compressedValue, reloaded::get));
+    }
+
+    @Test
+    public void noDictionaryFromTooFewSamples() {
+
+        CompressionDictionaries dictionaries = new CompressionDictionaries(DictionaryPolicy.builder().build(), folder.getRoot());
+
+        for (int i = 0; i < 10; i++) {
+            dictionaries.dictionaryFor(jsonValue(i));
+        }
+        dictionaries.newGeneration().join();
+
+        assertNull(dictionaries.dictionaryFor(jsonValue(0)));
+        assertEquals(0, dictionaryFiles().length);
+    }
+
+    @Test
+    public void sameSamplesDoNotAddDictionary() {
+
+        CompressionDictionaries dictionaries = new CompressionDictionaries(DictionaryPolicy.builder().build(), folder.getRoot());
+
+        train(dictionaries, this::jsonValue);
+        byte[] firstDictionary = dictionaries.dictionaryFor(jsonValue(0));
+
+        //the same samples give the same dictionary, its id is taken
+        train(dictionaries, this::jsonValue);
+
+        assertSame(firstDictionary, dictionaries.dictionaryFor(jsonValue(0)));
+        assertEquals(1, dictionaryFiles().length);
+    }
+
+    @Test
+    public void noTrainingOverMaxDictionaries() {
+
+        CompressionDictionaries dictionaries = new CompressionDictionaries(DictionaryPolicy.builder().maxDictionaries(1).build(), folder.getRoot());
+
+        train(dictionaries, this::jsonValue);
+        train(dictionaries, this::xmlValue);
+
+        assertEquals(1, dictionaryFiles().length);
+    }
+
+    @Test
+    public void unusedDictionariesAreRetired() throws Exception {
+
+        CompressionDictionaries dictionaries = new CompressionDictionaries(DictionaryPolicy.builder().build(), folder.getRoot());
+
+        train(dictionaries, this::jsonValue);
+        int jsonDictionaryId = CompressionUtil.dictionaryId(CompressionUtil.compress(jsonValue(0), dictionaries.dictionaryFor(jsonValue(0))));
+
+        train(dictionaries, this::xmlValue);
+        train(dictionaries, this::logValue);
+        assertEquals(3, dictionaryFiles().length);
+
+        dictionaries.retain(Collections.singleton(jsonDictionaryId));
+        assertEquals(3, dictionaryFiles().length);
+
+        //the current and the previous dictionary stay even if no value uses them
+        dictionaries.retain(Collections.emptySet());
+        assertEquals(2, dictionaryFiles().length);
+        assertNull(dictionaries.get(jsonDictionaryId));
+        assertNotNull(dictionaries.dictionaryFor(logValue(0)));
+    }
+
+    private static void train(CompressionDictionaries dictionaries, IntFunction<byte[]> values) {
+        for (int i = 0; i < VALUES; i++) {
+            dictionaries.dictionaryFor(values.apply(i));
+        }
+        dictionaries.newGeneration().join();
+    }
+
+    private File[] dictionaryFiles() {
+        return folder.getRoot().listFiles((dir, name) -> name.startsWith("d") && name.endsWith(".abby"));
+    }
+
+    private byte[] jsonValue(int i) {
+        return ("{\"user_id\":" + i + ",\"name\":\"user" + i + "\",\"email\":\"user" + i + "@example.com\",\"country\":\"DE\",\"active\":true}")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] xmlValue(int i) {
+        return ("<order><id>" + i + "</id><status>shipped</status><carrier>parcel-service</carrier><warehouse>north-" + i % 7 + "</warehouse></order>")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] logValue(int i) {
+        return ("2019-06-01T12:00:" + i % 60 + " INFO request handled path=/api/v1/items/" + i + " status=200 duration_ms=" + i % 13)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,141 @@
+package com.ally.db.feed;
+
+import com.ally.db.util.CompressionUtil;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ChangeFeedTest {
+
+    private static final long WAIT_MILLIS = 1000;
+
+    @Test
+    public void subscriberReceivesEventsInOrder() throws Exception {
+
+        ChangeFeed changeFeed = new ChangeFeed(16, 16);
+        Subscription subscription = changeFeed.subscribe(0).get();
+
+        publish(changeFeed, "first", "second", "third");
+
+        List<ChangeEvent> events = poll(subscription, 3);
+
+        assertEquals("first", events.get(0).getHashedKey());
+        assertEquals("third", events.get(2).getHashedKey());
+        assertEquals(events.get(0).getSequenceNumber() + 1, events.get(1).getSequenceNumber());
+        assertEquals(events.get(1).getSequenceNumber() + 1, events.get(2).getSequenceNumber());
+    }
+
+    @Test
+    public void subscriberResumesFromRetainedSequenceNumber() throws Exception {
+
+        ChangeFeed changeFeed = new ChangeFeed(16, 16);
+        Subscription subscription = changeFeed.subscribe(0).get();
+
+        publish(changeFeed, "first", "second", "third");
+        List<ChangeEvent> events = poll(subscription, 3);
+        subscription.close();
+
+        Subscription resumed = changeFeed.subscribe(events.get(1).getSequenceNumber()).get();
+        List<ChangeEvent> replayedEvents = poll(resumed, 2);
+
+        assertEquals("second", replayedEvents.get(0).getHashedKey());
+        assertEquals("third", replayedEvents.get(1).getHashedKey());
+        assertNull(resumed.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void resumeFromEventsNotRetainedIsRefused() throws Exception {
+
+        ChangeFeed changeFeed = new ChangeFeed(2, 16);
+        Subscription subscription = changeFeed.subscribe(0).get();
+
+        publish(changeFeed, "first", "second", "third");
+        List<ChangeEvent> events = poll(subscription, 3);
+
+        //the watch call answers this with OUT_OF_RANGE
+        Optional<Subscription> tooOld = changeFeed.subscribe(events.get(0).getSequenceNumber());
+        assertFalse(tooOld.isPresent());
+
+        assertTrue(changeFeed.subscribe(events.get(1).getSequenceNumber()).isPresent());
+    }
+
+    @Test
+    public void subscriberFallingBehindIsDropped() throws Exception {
+
+        ChangeFeed changeFeed = new ChangeFeed(16, 2);
+        Subscription subscription = changeFeed.subscribe(0).get();
+
+        publish(changeFeed, "first", "second", "third", "fourth");
+
+        //events are handed over by the dispatcher, draining them meanwhile would make room
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!subscription.isOverflowed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(subscription.isOverflowed());
+
+        //buffered events can still be drained and the subscriber resumes after the last one
+        List<ChangeEvent> events = poll(subscription, 2);
+        assertEquals("second", events.get(1).getHashedKey());
+        assertNull(subscription.poll(100, TimeUnit.MILLISECONDS));
+
+        Subscription resumed = changeFeed.subscribe(events.get(1).getSequenceNumber() + 1).get();
+        assertEquals("third", poll(resumed, 2).get(0).getHashedKey());
+    }
+
+    @Test
+    public void retainedValueOutlivesItsDictionary() throws Exception {
+
+        byte[] dictionary = "{\"user_id\":,\"name\":\"user\",\"country\":\"DE\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] value = "{\"user_id\":1,\"name\":\"user1\",\"country\":\"DE\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] compressedValue = CompressionUtil.compress(value, dictionary);
+
+        Map<Integer, byte[]> dictionaries = new HashMap<>();
+        dictionaries.put(CompressionUtil.dictionaryId(compressedValue), dictionary);
+
+        ChangeEvent event = new ChangeEvent(ChangeType.PUT, "key", 1, compressedValue, dictionaries::get);
+
+        //the garbage collection retires the dictionary while the event is retained
+        dictionaries.clear();
+
+        assertArrayEquals(value, event.decompressValue());
+    }
+
+    private static void publish(ChangeFeed changeFeed, String... hashedKeys) {
+
+        List<ChangeEvent> events = new ArrayList<>();
+
+        for (int i = 0; i < hashedKeys.length; i++) {
+            events.add(new ChangeEvent(ChangeType.PUT, hashedKeys[i], i + 1, null, dictionaryId -> null));
+        }
+
+        changeFeed.publish(events);
+    }
+
+    private static List<ChangeEvent> poll(Subscription subscription, int count) throws InterruptedException {
+
+        List<ChangeEvent> events = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            ChangeEvent event = subscription.poll(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            if (event == null) {
+                throw new AssertionError("Expected " + count + " events, got " + i);
+            }
+            events.add(event);
+        }
+
+        return events;
+    }
+}
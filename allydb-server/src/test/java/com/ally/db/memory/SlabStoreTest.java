@@ -0,0 +1,141 @@
+package com.ally.db.memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SlabStoreTest {
+
+    private static final int SLAB_SIZE = 1024;
+
+    @Test
+    public void leastRecentlyUsedValueIsEvicted() {
+
+        //one slab of 16 chunks of 64 bytes
+        SlabStore slabStore = new SlabStore(SLAB_SIZE, SLAB_SIZE, EvictionPolicy.LRU);
+
+        for (int i = 0; i < 16; i++) {
+            assertTrue(slabStore.put("key" + i, value(60, i), i + 1));
+        }
+
+        slabStore.get("key0");
+        assertTrue(slabStore.put("key16", value(60, 16), 17));
+
+        assertNotNull(slabStore.get("key0"));
+        assertNull(slabStore.get("key1"));
+        assertEquals(16, slabStore.size());
+    }
+
+    @Test
+    public void leastFrequentlyUsedValueIsEvicted() {
+
+        SlabStore slabStore = new SlabStore(SLAB_SIZE, SLAB_SIZE, EvictionPolicy.LFU);
+
+        for (int i = 0; i < 16; i++) {
+            slabStore.put("key" + i, value(60, i), i + 1);
+        }
+
+        //key3 is used least often, even though key0 was used longest ago
+        for (int i = 0; i < 16; i++) {
+            if (i != 3) {
+                slabStore.get("key" + i);
+            }
+        }
+        slabStore.get("key0");
+
+        slabStore.put("key16", value(60, 16), 17);
+
+        assertNull(slabStore.get("key3"));
+        assertNotNull(slabStore.get("key0"));
+    }
+
+    @Test
+    public void valueLargerThanSlabKeepsPreviousValue() {
+
+        SlabStore slabStore = new SlabStore(SLAB_SIZE, SLAB_SIZE, EvictionPolicy.LRU);
+
+        slabStore.put("key", value(60, 1), 1);
+
+        assertFalse(slabStore.fits(SLAB_SIZE + 1));
+        assertFalse(slabStore.put("key", value(SLAB_SIZE + 1, 2), 2));
+
+        assertArrayEquals(value(60, 1), slabStore.get("key"));
+        assertEquals(1, slabStore.sequenceNumber("key"));
+    }
+
+    @Test
+    public void overwriteOfFullClassEvictsNothing() {
+
+        SlabStore slabStore = new SlabStore(SLAB_SIZE, SLAB_SIZE, EvictionPolicy.LRU);
+
+        for (int i = 0; i < 16; i++) {
+            slabStore.put("key" + i, value(60, i), i + 1);
+        }
+
+        assertTrue(slabStore.put("key0", value(50, 100), 17));
+
+        assertEquals(16, slabStore.size());
+        assertArrayEquals(value(50, 100), slabStore.get("key0"));
+        assertEquals(17, slabStore.sequenceNumber("key0"));
+    }
+
+    @Test
+    public void classWithoutSlabTakesSlabOfOtherClass() {
+
+        //two slabs, both taken by small values
+        SlabStore slabStore = new SlabStore(2 * SLAB_SIZE, SLAB_SIZE, EvictionPolicy.LRU);
+
+        for (int i = 0; i < 32; i++) {
+            assertTrue(slabStore.put("small" + i, value(60, i), i + 1));
+        }
+
+        //the large value gets the slab of the least recently used small values
+        assertTrue(slabStore.put("large", value(SLAB_SIZE, 1), 33));
+
+        assertArrayEquals(value(SLAB_SIZE, 1), slabStore.get("large"));
+        assertNull(slabStore.get("small0"));
+        assertNotNull(slabStore.get("small31"));
+        assertEquals(17, slabStore.size());
+    }
+
+    @Test
+    public void emptySlabIsReusedByOtherClass() {
+
+        SlabStore slabStore = new SlabStore(SLAB_SIZE, SLAB_SIZE, EvictionPolicy.LRU);
+
+        slabStore.put("small", value(60, 1), 1);
+        slabStore.remove("small");
+
+        assertTrue(slabStore.put("large", value(SLAB_SIZE, 1), 2));
+        assertArrayEquals(value(SLAB_SIZE, 1), slabStore.get("large"));
+    }
+
+    @Test
+    public void peekDoesNotCountAsAccess() {
+
+        SlabStore slabStore = new SlabStore(SLAB_SIZE, SLAB_SIZE, EvictionPolicy.LRU);
+
+        for (int i = 0; i < 16; i++) {
+            slabStore.put("key" + i, value(60, i), i + 1);
+        }
+
+        assertEquals(1, slabStore.peek("key0").getSequenceNumber());
+        slabStore.put("key16", value(60, 16), 17);
+
+        assertNull(slabStore.peek("key0"));
+        assertEquals(16, slabStore.hashes().size());
+    }
+
+    private static byte[] value(int length, int seed) {
+        byte[] value = new byte[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = (byte) (seed + i);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,61 @@
+package com.ally.db.memory;
+
+import com.ally.db.index.VersionedValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void committedValuesAreLoaded() throws Exception {
+
+        SnapshotFile snapshotFile = new SnapshotFile(new File(folder.getRoot(), "snapshot.abby"));
+
+        try (SnapshotFile.Writer writer = snapshotFile.newWriter()) {
+            writer.append("first", new VersionedValue(new byte[]{1, 2}, 10));
+            writer.append("second", new VersionedValue(new byte[]{3}, 11));
+            writer.commit();
+        }
+
+        Map<String, VersionedValue> values = new LinkedHashMap<>();
+        assertEquals(2, snapshotFile.load(values::put));
+
+        assertArrayEquals(new byte[]{1, 2}, values.get("first").getValue());
+        assertEquals(11, values.get("second").getSequenceNumber());
+    }
+
+    @Test
+    public void uncommittedSnapshotKeepsPreviousOne() throws Exception {
+
+        SnapshotFile snapshotFile = new SnapshotFile(new File(folder.getRoot(), "snapshot.abby"));
+
+        try (SnapshotFile.Writer writer = snapshotFile.newWriter()) {
+            writer.append("first", new VersionedValue(new byte[]{1}, 10));
+            writer.commit();
+        }
+
+        try (SnapshotFile.Writer writer = snapshotFile.newWriter()) {
+            writer.append("second", new VersionedValue(new byte[]{2}, 11));
+        }
+
+        Map<String, VersionedValue> values = new LinkedHashMap<>();
+        snapshotFile.load(values::put);
+
+        assertTrue(values.containsKey("first"));
+        assertFalse(values.containsKey("second"));
+        assertEquals(1, folder.getRoot().list().length);
+    }
+}